@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import se.swedenconnect.bankid.rpapi.types.OrderResponse;
+
+/**
+ * Builds the data for "animated" QR codes according to section 4.2 of the BankID Relying Party Guidelines, i.e.,
+ * {@code bankid.<qrStartToken>.<qrTime>.<qrAuthCode>}.
+ *
+ * @author Martin Lindström
+ */
+public final class AnimatedQRData {
+
+  /** The HMAC algorithm used when calculating the auth code. */
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+  /**
+   * An un-keyed HMAC instance that is cloned for each calculation (avoids provider lookups). No key material is kept
+   * after a calculation.
+   */
+  private static final Mac HMAC_PROTOTYPE = createHmacPrototype();
+
+  /** For hex encoding of the auth code. */
+  private static final HexFormat HEX = HexFormat.of();
+
+  /**
+   * Builds the QR data given the time when the order was received.
+   *
+   * @param qrStartToken the QR start token (see {@link OrderResponse#getQrStartToken()})
+   * @param qrStartSecret the QR start secret (see {@link OrderResponse#getQrStartSecret()})
+   * @param orderTime the instant when the order was received
+   * @param clock the clock used to calculate the QR time
+   * @return the QR data
+   * @throws IllegalStateException if the auth code can not be calculated
+   */
+  public static String build(
+      final String qrStartToken, final String qrStartSecret, final Instant orderTime, final Clock clock) {
+    return build(qrStartToken, qrStartSecret, getQrTime(orderTime, clock));
+  }
+
+  /**
+   * Builds the QR data given the number of seconds since the order was received.
+   *
+   * @param qrStartToken the QR start token (see {@link OrderResponse#getQrStartToken()})
+   * @param qrStartSecret the QR start secret (see {@link OrderResponse#getQrStartSecret()})
+   * @param qrTime the number of seconds since the order was received
+   * @return the QR data
+   * @throws IllegalStateException if the auth code can not be calculated
+   */
+  public static String build(final String qrStartToken, final String qrStartSecret, final long qrTime) {
+    try {
+      final String time = Long.toString(qrTime);
+      final Mac mac = newHmac();
+      mac.init(new SecretKeySpec(qrStartSecret.getBytes(StandardCharsets.US_ASCII), HMAC_ALGORITHM));
+      final String qrAuthCode = HEX.formatHex(mac.doFinal(time.getBytes(StandardCharsets.US_ASCII)));
+
+      return String.join(".", "bankid", qrStartToken, time, qrAuthCode);
+    }
+    catch (final NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new IllegalStateException("Failed to compute HMAC", e);
+    }
+  }
+
+  /**
+   * Gets the QR time, i.e., the number of seconds elapsed since the order was received.
+   *
+   * @param orderTime the instant when the order was received
+   * @param clock the clock
+   * @return the number of seconds since the order was received
+   */
+  public static long getQrTime(final Instant orderTime, final Clock clock) {
+    return orderTime.until(clock.instant(), ChronoUnit.SECONDS);
+  }
+
+  /**
+   * Creates a new (un-keyed) HMAC instance.
+   *
+   * @return a {@link Mac}
+   * @throws NoSuchAlgorithmException if HmacSHA256 is not supported
+   */
+  private static Mac newHmac() throws NoSuchAlgorithmException {
+    if (HMAC_PROTOTYPE != null) {
+      try {
+        return (Mac) HMAC_PROTOTYPE.clone();
+      }
+      catch (final CloneNotSupportedException e) {
+        // Fall through and create a new instance ...
+      }
+    }
+    return Mac.getInstance(HMAC_ALGORITHM);
+  }
+
+  /**
+   * Creates the HMAC prototype.
+   *
+   * @return a {@link Mac}, or {@code null} if HmacSHA256 is not supported (reported when the MAC is used)
+   */
+  private static Mac createHmacPrototype() {
+    try {
+      return Mac.getInstance(HMAC_ALGORITHM);
+    }
+    catch (final NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Hidden constructor.
+   */
+  private AnimatedQRData() {
+  }
+
+}
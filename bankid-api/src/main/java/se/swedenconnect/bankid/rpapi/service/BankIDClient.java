@@ -15,6 +15,10 @@
  */
 package se.swedenconnect.bankid.rpapi.service;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import se.swedenconnect.bankid.rpapi.types.BankIDException;
 import se.swedenconnect.bankid.rpapi.types.CollectResponse;
@@ -28,6 +32,9 @@ import se.swedenconnect.bankid.rpapi.types.UserCancelException;
  */
 public interface BankIDClient {
 
+  /** The default maximum number of concurrent collect calls made by {@link #collectAll(Collection)}. */
+  int DEFAULT_COLLECT_CONCURRENCY = 16;
+
   /**
    * The unique identifier for this client. This is mainly important when we use more than one client, for example if we
    * implement an IdP that serves several relying parties, and each RP has a client of its own.
@@ -70,6 +77,36 @@ public interface BankIDClient {
    */
   Mono<? extends CollectResponse> collect(final String orderReference);
 
+  /**
+   * Collects the result for several orders using at most {@link #DEFAULT_COLLECT_CONCURRENCY} concurrent calls.
+   *
+   * @param orderReferences the order references
+   * @return a {@link Flux} of collect responses
+   * @see #collectAll(Collection, int)
+   */
+  default Flux<CollectResponse> collectAll(final Collection<String> orderReferences) {
+    return this.collectAll(orderReferences, DEFAULT_COLLECT_CONCURRENCY);
+  }
+
+  /**
+   * Collects the result for several orders. Duplicate order references are collected once, and at most
+   * {@code concurrency} collect calls are outstanding at the same time. Responses are emitted as they arrive, i.e., not
+   * necessarily in the order of the supplied order references, and further calls are only made when the subscriber
+   * requests more responses.
+   * <p>
+   * An error for one order does not stop the collection of the other orders. All successful responses are emitted, and
+   * errors are reported when all orders have been processed (combined if there is more than one).
+   * </p>
+   *
+   * @param orderReferences the order references
+   * @param concurrency the maximum number of concurrent collect calls
+   * @return a {@link Flux} of collect responses
+   */
+  default Flux<CollectResponse> collectAll(final Collection<String> orderReferences, final int concurrency) {
+    return Flux.fromIterable(new LinkedHashSet<>(orderReferences))
+        .flatMapDelayError(this::collect, concurrency, 1);
+  }
+
   /**
    * Returns the QR generator that should be used to generate QR codes.
    *
@@ -16,6 +16,7 @@
 package se.swedenconnect.bankid.rpapi.service;
 
 import java.io.IOException;
+import java.time.Clock;
 import java.time.Instant;
 
 import se.swedenconnect.bankid.rpapi.types.OrderResponse;
@@ -184,6 +185,26 @@ public interface QRGenerator {
   String generateAnimatedQRCodeBase64Image(final String qrStartToken, final String qrStartSecret,
       final Instant orderTime);
 
+  /**
+   * Generates the data for an "animated" QR code, i.e., the string that is encoded in the QR code. This is useful for
+   * frontends that render the QR code themselves.
+   * <p>
+   * The data is built according to section 4.2 of the BankID Relying Party Guidelines, and has the format
+   * {@code bankid.<qrStartToken>.<qrTime>.<qrAuthCode>}, i.e., the same data that is encoded in the images generated
+   * by {@link #generateAnimatedQRCodeImage(String, String, Instant)}. The default implementation uses
+   * {@link AnimatedQRData} and the system clock.
+   * </p>
+   *
+   * @param qrStartToken the QR start token (see {@link OrderResponse#getQrStartToken()})
+   * @param qrStartSecret the QR start secret (see {@link OrderResponse#getQrStartSecret()})
+   * @param orderTime the instant when the order was received
+   * @return the QR code data
+   */
+  default String generateAnimatedQRCodeData(
+      final String qrStartToken, final String qrStartSecret, final Instant orderTime) {
+    return AnimatedQRData.build(qrStartToken, qrStartSecret, orderTime, Clock.systemUTC());
+  }
+
   /**
    * Enum representing an image format.
    */
@@ -17,19 +17,25 @@ package se.swedenconnect.bankid.rpapi.service.impl;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
+import se.swedenconnect.bankid.rpapi.service.AnimatedQRData;
 import se.swedenconnect.bankid.rpapi.service.BankIDClient;
 import se.swedenconnect.bankid.rpapi.service.QRGenerator;
 import se.swedenconnect.bankid.rpapi.types.OrderResponse;
@@ -41,18 +47,78 @@ import se.swedenconnect.bankid.rpapi.types.OrderResponse;
  */
 public abstract class AbstractQRGenerator implements QRGenerator {
 
+  /** Class logger. */
+  private static final Logger log = LoggerFactory.getLogger(AbstractQRGenerator.class);
+
   /** The default width and height (in pixels) to use for generated QR images. */
   public static final int DEFAULT_SIZE = 300;
 
   /** The default image format to use for generated QR images. */
   public static final ImageFormat DEFAULT_IMAGE_FORMAT = ImageFormat.PNG;
 
+  /** The default maximum number of animated QR frames that are cached. */
+  public static final int DEFAULT_FRAME_CACHE_SIZE = 1000;
+
+  /**
+   * The default duration that an animated QR frame is cached. A frame is only valid during one second, so there is no
+   * point in keeping it much longer.
+   */
+  public static final Duration DEFAULT_FRAME_CACHE_TTL = Duration.ofSeconds(2);
+
   /** The configured default width and height (in pixels) to use for generated QR images. */
   private int defaultSize = DEFAULT_SIZE;
 
   /** The configured default image format to use for generated QR images. */
   private ImageFormat defaultImageFormat = DEFAULT_IMAGE_FORMAT;
 
+  /** The maximum number of animated QR frames that are cached. */
+  private int frameCacheSize = DEFAULT_FRAME_CACHE_SIZE;
+
+  /** The duration that an animated QR frame is cached. */
+  private Duration frameCacheTtl = DEFAULT_FRAME_CACHE_TTL;
+
+  /** The number of frames (seconds) ahead that should be pre-generated. */
+  private int preGenerateFrames = 0;
+
+  /** The executor used for pre-generation of frames. */
+  private Executor preGenerationExecutor;
+
+  /** Frames that are currently being pre-generated (the last frame of each window). */
+  private final Set<FrameKey> pendingFrames = ConcurrentHashMap.newKeySet();
+
+  /** Cache of generated animated QR frames. The frames are kept in insertion order, i.e., the oldest frame first. */
+  private final Map<FrameKey, Frame> frameCache = Collections.synchronizedMap(new LinkedHashMap<>());
+
+  /**
+   * Whether the subclass implements {@link #generateImage(String, int, ImageFormat)}. If not, frame caching and
+   * pre-generation are not used.
+   */
+  private final boolean imageGenerationImplemented = implementsGenerateImage(this.getClass());
+
+  /** The clock. */
+  private Clock clock = Clock.systemUTC();
+
+  /**
+   * Generates the QR code image based on the supplied input string.
+   * <p>
+   * Subclasses that implement this method get the generation of static and animated QR codes, including caching of
+   * animated QR frames (see {@link #setFrameCacheSize(int)}), from this class. Subclasses not implementing this method
+   * must instead implement {@link #generateQRCodeImage(String, int, ImageFormat)} and
+   * {@link #generateAnimatedQRCodeImage(String, String, Instant, int, ImageFormat)}, and animated QR frames are then
+   * not cached. The default implementation throws {@link UnsupportedOperationException}.
+   * </p>
+   *
+   * @param input the input
+   * @param size the width and height of the generated QR code (in pixels)
+   * @param format the format for the generated QR code
+   * @return an byte array representing the generated QR code
+   * @throws IOException for errors during generation
+   */
+  protected byte[] generateImage(final String input, final int size, final ImageFormat format) throws IOException {
+    throw new UnsupportedOperationException(
+        "%s does not implement generateImage".formatted(this.getClass().getSimpleName()));
+  }
+
   /**
    * Builds the URI that is used as input for the static QR generation.
    *
@@ -76,22 +142,180 @@ public abstract class AbstractQRGenerator implements QRGenerator {
    */
   protected String buildAnimatedInput(final String qrStartToken, final String qrStartSecret, final Instant orderTime)
       throws IOException {
+    return this.buildAnimatedInput(qrStartToken, qrStartSecret, this.getQrTime(orderTime));
+  }
+
+  /**
+   * Generates the QR data for an "animated" QR code given the number of seconds since the order was received.
+   *
+   * @param qrStartToken the QR start token (see {@link OrderResponse#getQrStartToken()})
+   * @param qrStartSecret the QR start secret (see {@link OrderResponse#getQrStartSecret()})
+   * @param qrTime the number of seconds since the order was received
+   * @return the QR data
+   * @throws IOException for errors calculating the code
+   */
+  protected String buildAnimatedInput(final String qrStartToken, final String qrStartSecret, final long qrTime)
+      throws IOException {
     try {
-      final String qrTime = Long.toString(orderTime.until(Instant.now(), ChronoUnit.SECONDS));
+      return AnimatedQRData.build(qrStartToken, qrStartSecret, qrTime);
+    }
+    catch (final IllegalStateException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
 
-      final Mac mac = Mac.getInstance("HmacSHA256");
-      mac.init(new SecretKeySpec(qrStartSecret.getBytes(StandardCharsets.US_ASCII), "HmacSHA256"));
-      mac.update(qrTime.getBytes(StandardCharsets.US_ASCII));
+  /**
+   * Gets the QR time, i.e., the number of seconds elapsed since the order was received.
+   *
+   * @param orderTime the instant when the order was received
+   * @return the number of seconds since the order was received
+   */
+  protected long getQrTime(final Instant orderTime) {
+    return AnimatedQRData.getQrTime(orderTime, this.clock);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public byte[] generateQRCodeImage(final String autoStartToken, final int size, final ImageFormat format)
+      throws IOException {
+    return this.generateImage(this.buildInput(autoStartToken), size, format);
+  }
+
+  /**
+   * Generates an "animated" QR code image. Since the QR code only changes once every second, generated images are
+   * cached (see {@link #setFrameCacheSize(int)}). A copy of the cached image is returned.
+   */
+  @Override
+  public byte[] generateAnimatedQRCodeImage(final String qrStartToken, final String qrStartSecret,
+      final Instant orderTime, final int size, final ImageFormat format) throws IOException {
+    return this.getFrame(qrStartToken, qrStartSecret, this.getQrTime(orderTime), size, format).image().clone();
+  }
+
+  /**
+   * Gets the frame for the given input, either from the cache, or by generating it.
+   *
+   * @param qrStartToken the QR start token
+   * @param qrStartSecret the QR start secret
+   * @param qrTime the number of seconds since the order was received
+   * @param size the width and height of the generated QR code (in pixels)
+   * @param format the format for the generated QR code
+   * @return the frame
+   * @throws IOException for errors during generation
+   */
+  private Frame getFrame(final String qrStartToken, final String qrStartSecret, final long qrTime, final int size,
+      final ImageFormat format) throws IOException {
+
+    if (this.frameCacheSize <= 0) {
+      return this.createFrame(qrStartToken, qrStartSecret, qrTime, size, format);
+    }
+    this.preGenerate(qrStartToken, qrStartSecret, qrTime, size, format);
+
+    final FrameKey key = new FrameKey(qrStartToken, qrTime, size, format);
+    final Frame cached = this.frameCache.get(key);
+    if (cached != null && !cached.isExpired(this.getEffectiveFrameCacheTtl(), this.clock.millis())) {
+      return cached;
+    }
+    final Frame frame = this.createFrame(qrStartToken, qrStartSecret, qrTime, size, format);
+    this.putFrame(key, frame);
+    return frame;
+  }
 
-      final String qrAuthCode = String.format("%064x", new BigInteger(1, mac.doFinal()));
+  /**
+   * Generates a frame.
+   *
+   * @param qrStartToken the QR start token
+   * @param qrStartSecret the QR start secret
+   * @param qrTime the number of seconds since the order was received
+   * @param size the width and height of the generated QR code (in pixels)
+   * @param format the format for the generated QR code
+   * @return the frame
+   * @throws IOException for errors during generation
+   */
+  private Frame createFrame(final String qrStartToken, final String qrStartSecret, final long qrTime, final int size,
+      final ImageFormat format) throws IOException {
+    return new Frame(this.generateImage(this.buildAnimatedInput(qrStartToken, qrStartSecret, qrTime), size, format),
+        format, this.clock.millis());
+  }
 
-      return String.join(".", "bankid", qrStartToken, qrTime, qrAuthCode);
+  /**
+   * Adds a frame to the cache. If the cache is full, the oldest frame is removed. The oldest frame is also removed if it
+   * has expired, so that expired frames are evicted at the same pace as new frames are added. Since the frames are kept
+   * in insertion order, this is done in constant time.
+   *
+   * @param key the frame key
+   * @param frame the frame
+   */
+  private void putFrame(final FrameKey key, final Frame frame) {
+    final Duration ttl = this.getEffectiveFrameCacheTtl();
+    final long now = this.clock.millis();
+    synchronized (this.frameCache) {
+      this.frameCache.put(key, frame);
+      final Iterator<Frame> frames = this.frameCache.values().iterator();
+      while (frames.hasNext() && this.frameCache.size() > this.frameCacheSize) {
+        frames.next();
+        frames.remove();
+      }
+      if (frames.hasNext() && frames.next().isExpired(ttl, now)) {
+        frames.remove();
+      }
     }
-    catch (NoSuchAlgorithmException | InvalidKeyException | IllegalStateException e) {
-      throw new IOException("Failed to compute HMAC", e);
+  }
+
+  /**
+   * If pre-generation of frames is active, makes sure that the coming frames for the order are generated (in the
+   * background).
+   *
+   * @param qrStartToken the QR start token
+   * @param qrStartSecret the QR start secret
+   * @param qrTime the current QR time
+   * @param size the width and height of the generated QR code (in pixels)
+   * @param format the format for the generated QR code
+   */
+  private void preGenerate(final String qrStartToken, final String qrStartSecret, final long qrTime, final int size,
+      final ImageFormat format) {
+
+    if (this.preGenerateFrames <= 0 || this.preGenerationExecutor == null) {
+      return;
+    }
+    // If the last frame in the window is cached, or is being generated, there is nothing to do ...
+    final FrameKey last = new FrameKey(qrStartToken, qrTime + this.preGenerateFrames, size, format);
+    if (this.frameCache.containsKey(last) || !this.pendingFrames.add(last)) {
+      return;
+    }
+    try {
+      this.preGenerationExecutor.execute(() -> {
+        try {
+          for (long time = qrTime + 1; time <= last.qrTime(); time++) {
+            final FrameKey key = new FrameKey(qrStartToken, time, size, format);
+            if (!this.frameCache.containsKey(key)) {
+              this.putFrame(key, this.createFrame(qrStartToken, qrStartSecret, time, size, format));
+            }
+          }
+        }
+        catch (final IOException | RuntimeException e) {
+          log.info("Failed to pre-generate QR codes - {}", e.getMessage(), e);
+        }
+        finally {
+          this.pendingFrames.remove(last);
+        }
+      });
+    }
+    catch (final RejectedExecutionException e) {
+      log.debug("Pre-generation of QR codes rejected - {}", e.getMessage());
+      this.pendingFrames.remove(last);
     }
   }
 
+  /**
+   * Gets the TTL for cached frames. If frames are pre-generated, they must be kept until they are used.
+   *
+   * @return the TTL for cached frames
+   */
+  private Duration getEffectiveFrameCacheTtl() {
+    final Duration preGenerationTtl = Duration.ofSeconds(this.preGenerateFrames + 2L);
+    return this.frameCacheTtl.compareTo(preGenerationTtl) >= 0 ? this.frameCacheTtl : preGenerationTtl;
+  }
+
   /** {@inheritDoc} */
   @Override
   public byte[] generateQRCodeImage(final String autoStartToken) throws IOException {
@@ -111,9 +335,7 @@ public abstract class AbstractQRGenerator implements QRGenerator {
   public String generateQRCodeBase64Image(final String autoStartToken, final int size, final ImageFormat format)
       throws IOException {
 
-    final byte[] imageBytes = this.generateQRCodeImage(autoStartToken, size, format);
-    return String.format("data:image/%s;base64, %s",
-        format.getImageFormatName().toLowerCase(), Base64.getEncoder().encodeToString(imageBytes));
+    return toBase64Image(this.generateQRCodeImage(autoStartToken, size, format), format);
   }
 
   /** {@inheritDoc} */
@@ -127,9 +349,11 @@ public abstract class AbstractQRGenerator implements QRGenerator {
   public String generateAnimatedQRCodeBase64Image(final String qrStartToken, final String qrStartSecret,
       final Instant orderTime, final int size, final ImageFormat format) {
     try {
-      final byte[] imageBytes = this.generateAnimatedQRCodeImage(qrStartToken, qrStartSecret, orderTime, size, format);
-      return String.format("data:image/%s;base64, %s", format.getImageFormatName().toLowerCase(),
-          Base64.getEncoder().encodeToString(imageBytes));
+      if (!this.imageGenerationImplemented) {
+        return toBase64Image(
+            this.generateAnimatedQRCodeImage(qrStartToken, qrStartSecret, orderTime, size, format), format);
+      }
+      return this.getFrame(qrStartToken, qrStartSecret, this.getQrTime(orderTime), size, format).base64Image();
     }
     catch (IOException e) {
       throw new UncheckedIOException(e);
@@ -145,6 +369,18 @@ public abstract class AbstractQRGenerator implements QRGenerator {
         this.defaultSize, this.defaultImageFormat);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public String generateAnimatedQRCodeData(
+      final String qrStartToken, final String qrStartSecret, final Instant orderTime) {
+    try {
+      return this.buildAnimatedInput(qrStartToken, qrStartSecret, orderTime);
+    }
+    catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   /**
    * Assigns the default width and height (in pixels) to use for generated QR images.
    * <p>
@@ -170,4 +406,144 @@ public abstract class AbstractQRGenerator implements QRGenerator {
     this.defaultImageFormat = defaultImageFormat;
   }
 
+  /**
+   * Assigns the maximum number of animated QR frames that should be cached. Since an animated QR code only changes
+   * once every second, repeated calls within the same second (for the same order) will re-use the cached image. A value
+   * of 0 turns off caching.
+   * <p>
+   * If not assigned, {@link #DEFAULT_FRAME_CACHE_SIZE} will be used.
+   * </p>
+   *
+   * @param frameCacheSize the maximum number of cached frames
+   */
+  public void setFrameCacheSize(final int frameCacheSize) {
+    this.frameCacheSize = frameCacheSize;
+    if (frameCacheSize <= 0) {
+      this.frameCache.clear();
+    }
+  }
+
+  /**
+   * Assigns the duration that an animated QR frame is cached.
+   * <p>
+   * If not assigned, {@link #DEFAULT_FRAME_CACHE_TTL} will be used.
+   * </p>
+   *
+   * @param frameCacheTtl the duration
+   */
+  public void setFrameCacheTtl(final Duration frameCacheTtl) {
+    Assert.notNull(frameCacheTtl, "frameCacheTtl must not be null");
+    this.frameCacheTtl = frameCacheTtl;
+  }
+
+  /**
+   * Assigns the number of animated QR frames (seconds) ahead that should be generated in the background. When an
+   * animated QR code is requested for an order, the frames for the coming seconds are generated and put in the frame
+   * cache, so that subsequent requests are served from the cache. This evens out the CPU usage during peaks.
+   * <p>
+   * The default is 0, meaning that no frames are pre-generated. Pre-generation requires that an executor has been
+   * assigned (see {@link #setPreGenerationExecutor(Executor)}) and that the frame cache is active.
+   * </p>
+   *
+   * @param preGenerateFrames the number of frames to pre-generate
+   */
+  public void setPreGenerateFrames(final int preGenerateFrames) {
+    this.preGenerateFrames = preGenerateFrames;
+  }
+
+  /**
+   * Assigns the executor that is used for pre-generation of frames (see {@link #setPreGenerateFrames(int)}).
+   *
+   * @param preGenerationExecutor the executor
+   */
+  public void setPreGenerationExecutor(final Executor preGenerationExecutor) {
+    this.preGenerationExecutor = preGenerationExecutor;
+  }
+
+  /**
+   * Assigns the clock to use. For testing.
+   *
+   * @param clock the clock
+   */
+  void setClock(final Clock clock) {
+    this.clock = Objects.requireNonNull(clock, "clock must not be null");
+  }
+
+  /**
+   * Tells whether the supplied class, or any of its superclasses, implements
+   * {@link #generateImage(String, int, ImageFormat)}.
+   *
+   * @param clazz the class
+   * @return {@code true} if the method is implemented and {@code false} otherwise
+   */
+  private static boolean implementsGenerateImage(final Class<?> clazz) {
+    for (Class<?> c = clazz; c != null && c != AbstractQRGenerator.class; c = c.getSuperclass()) {
+      try {
+        c.getDeclaredMethod("generateImage", String.class, int.class, ImageFormat.class);
+        return true;
+      }
+      catch (final NoSuchMethodException e) {
+        // Continue with the superclass ...
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates a data URI for the supplied image.
+   *
+   * @param image the image bytes
+   * @param format the image format
+   * @return a data URI
+   */
+  private static String toBase64Image(final byte[] image, final ImageFormat format) {
+    final String mediaSubtype = ImageFormat.SVG.equals(format) ? "svg+xml" : format.getImageFormatName().toLowerCase();
+    return String.format("data:image/%s;base64, %s", mediaSubtype, Base64.getEncoder().encodeToString(image));
+  }
+
+  /**
+   * Key for the frame cache.
+   */
+  private record FrameKey(String qrStartToken, long qrTime, int size, ImageFormat format) {
+  }
+
+  /**
+   * A generated animated QR frame.
+   */
+  private static final class Frame {
+
+    /** The image bytes. */
+    private final byte[] image;
+
+    /** The image format. */
+    private final ImageFormat format;
+
+    /** When the frame was created (millis since epoch). */
+    private final long created;
+
+    /** The lazily created data URI. */
+    private volatile String base64Image;
+
+    Frame(final byte[] image, final ImageFormat format, final long created) {
+      this.image = image;
+      this.format = format;
+      this.created = created;
+    }
+
+    byte[] image() {
+      return this.image;
+    }
+
+    String base64Image() {
+      if (this.base64Image == null) {
+        this.base64Image = toBase64Image(this.image, this.format);
+      }
+      return this.base64Image;
+    }
+
+    boolean isExpired(final Duration ttl, final long now) {
+      return now - this.created > ttl.toMillis();
+    }
+  }
+
 }
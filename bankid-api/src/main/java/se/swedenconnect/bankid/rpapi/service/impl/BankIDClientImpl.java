@@ -16,17 +16,21 @@
 package se.swedenconnect.bankid.rpapi.service.impl;
 
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
 import org.springframework.util.Assert;
 import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -35,7 +39,10 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutException;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import se.swedenconnect.bankid.rpapi.service.AuthenticateRequest;
 import se.swedenconnect.bankid.rpapi.service.BankIDClient;
 import se.swedenconnect.bankid.rpapi.service.DataToSign;
@@ -49,6 +56,7 @@ import se.swedenconnect.bankid.rpapi.types.ErrorResponse;
 import se.swedenconnect.bankid.rpapi.types.OrderResponse;
 import se.swedenconnect.bankid.rpapi.types.Requirement;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
 
 /**
  * An implementation of the BankID Relying Party API methods.
@@ -60,9 +68,6 @@ public class BankIDClientImpl implements BankIDClient {
   /** Class logger. */
   private static final Logger log = LoggerFactory.getLogger(BankIDClientImpl.class);
 
-  /** The executor service. */
-  public final ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
-
   /**
    * The unique client identifier.
    */
@@ -83,11 +88,48 @@ public class BankIDClientImpl implements BankIDClient {
    */
   private static ObjectMapper objectMapper = new ObjectMapper();
 
+  /**
+   * Writer for /auth requests. The request bodies are serialized by us, and not by the {@link WebClient} codecs, so
+   * any customizations of the codec's object mapper do not apply to them. The request types are fully described by
+   * their annotations, so the output is the same as the (default) codec output.
+   */
+  private static final ObjectWriter AUTHN_REQUEST_WRITER = objectMapper.writerFor(AuthnRequest.class);
+
+  /** Writer for /sign requests (see {@link #AUTHN_REQUEST_WRITER}). */
+  private static final ObjectWriter SIGN_REQUEST_WRITER = objectMapper.writerFor(SignRequest.class);
+
+  /** The JSON preceding the order reference in /collect and /cancel requests. */
+  private static final byte[] ORDER_REF_PREFIX = "{\"orderRef\":\"".getBytes(StandardCharsets.US_ASCII);
+
+  /** The JSON following the order reference in /collect and /cancel requests. */
+  private static final byte[] ORDER_REF_SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+
   private static final String AUTH_PATH = "/auth";
   private static final String SIGN_PATH = "/sign";
   private static final String CANCEL_PATH = "/cancel";
   private static final String COLLECT_PATH = "/collect";
 
+  /** The default timeout for the /auth and /sign calls. */
+  public static final Duration DEFAULT_ORDER_TIMEOUT = Duration.ofSeconds(10);
+
+  /** The default timeout for the /collect and /cancel calls. */
+  public static final Duration DEFAULT_COLLECT_TIMEOUT = Duration.ofSeconds(5);
+
+  /** Timeout for the /auth call. */
+  private Duration authTimeout = DEFAULT_ORDER_TIMEOUT;
+
+  /** Timeout for the /sign call. */
+  private Duration signTimeout = DEFAULT_ORDER_TIMEOUT;
+
+  /** Timeout for the /collect call. */
+  private Duration collectTimeout = DEFAULT_COLLECT_TIMEOUT;
+
+  /** Timeout for the /cancel call. */
+  private Duration cancelTimeout = DEFAULT_COLLECT_TIMEOUT;
+
+  /** The scheduler on which responses are delivered. If {@code null}, the HTTP client threads are used. */
+  private Scheduler responseScheduler;
+
   /**
    * Constructor.
    *
@@ -124,18 +166,22 @@ public class BankIDClientImpl implements BankIDClient {
         new AuthnRequest(request.getEndUserIp(), request.getRequirement(), request.getUserVisibleData());
     log.debug("{}: authenticate. request: [{}] [path: {}]", this.identifier, request, AUTH_PATH);
 
-    log.debug("Request serialized {}", objectMapper.writerFor(AuthnRequest.class).writeValueAsString(authnRequest));
     try {
+      final byte[] body = AUTHN_REQUEST_WRITER.writeValueAsBytes(authnRequest);
+      if (log.isDebugEnabled()) {
+        log.debug("Request serialized {}", new String(body, StandardCharsets.UTF_8));
+      }
       return this.webClient.post()
           .uri(AUTH_PATH)
-          .contentType(MediaType.APPLICATION_JSON)
-          .bodyValue(authnRequest)
+          .body(jsonBody(body))
           .retrieve()
           .onRawStatus(StatusCodePredicates.userError(), BankIdErrorBodyExtractors.userErrorBodyExtractor())
           .onRawStatus(StatusCodePredicates.serverError(), BankIdErrorBodyExtractors.serverErrorBodyExtractor())
           .bodyToMono(OrderResponse.class)
+          .transform(m -> this.withTimeout(m, this.authTimeout, AUTH_PATH))
+          .transform(this::publishResponse)
           .map(m -> {
-            log.debug("{}: authenticate. response: [{}]", this.identifier, m.toString());
+            log.debug("{}: authenticate. response: [{}]", this.identifier, m);
             return m;
           })
           .doOnError(e -> log.info("Error in request to bankid: " + request.toString(), e));
@@ -166,14 +212,19 @@ public class BankIDClientImpl implements BankIDClient {
 
     return this.webClient.post()
         .uri(SIGN_PATH)
-        .bodyValue(signRequest)
+        .body(jsonBody(SIGN_REQUEST_WRITER.writeValueAsBytes(signRequest)))
         .retrieve()
         .onRawStatus(StatusCodePredicates.userError(), BankIdErrorBodyExtractors.userErrorBodyExtractor())
         .onRawStatus(StatusCodePredicates.serverError(), BankIdErrorBodyExtractors.serverErrorBodyExtractor())
         .bodyToMono(OrderResponse.class)
-        .onErrorComplete()
+        .transform(m -> this.withTimeout(m, this.signTimeout, SIGN_PATH))
+        .onErrorComplete(e -> !(e instanceof BankIdTimeoutException))
+        .transform(this::publishResponse)
         .doOnError(e -> {
-          if (e instanceof final WebClientResponseException webClientResponseException) {
+          if (e instanceof BankIdTimeoutException) {
+            log.warn("{}: Sign. {}", this.identifier, e.getMessage());
+          }
+          else if (e instanceof final WebClientResponseException webClientResponseException) {
             log.info("{}: Sign. Error during sign-call - {} - {} - {}",
                 this.identifier, webClientResponseException.getMessage(), webClientResponseException.getStatusCode(),
                 webClientResponseException.getResponseBodyAsString());
@@ -195,16 +246,19 @@ public class BankIDClientImpl implements BankIDClient {
     Assert.hasText(orderReference, "'orderReference' must not be null or empty");
     log.debug("{}: cancel: Request for cancelling order {}", this.identifier, orderReference);
 
-    final OrderRefRequest request = new OrderRefRequest(orderReference);
-
     return this.webClient.post()
         .uri(CANCEL_PATH)
-        .bodyValue(request)
+        .body(orderRefBody(orderReference))
         .retrieve()
         .bodyToMono(Void.class)
+        .transform(m -> this.withTimeout(m, this.cancelTimeout, CANCEL_PATH))
+        .transform(this::publishResponse)
         .doOnSuccess(n -> log.debug("{}: cancel. Order {} successfully cancelled", this.identifier, orderReference))
         .doOnError(e -> {
-          if (e instanceof final WebClientResponseException webClientResponseException) {
+          if (e instanceof BankIdTimeoutException) {
+            log.warn("{}: cancel. {}", this.identifier, e.getMessage());
+          }
+          else if (e instanceof final WebClientResponseException webClientResponseException) {
             log.info("{}: cancel. Error during cancel-call - {} - {} - {}",
                 this.identifier, webClientResponseException.getMessage(), webClientResponseException.getStatusCode(),
                 webClientResponseException.getResponseBodyAsString());
@@ -234,18 +288,22 @@ public class BankIDClientImpl implements BankIDClient {
     Assert.hasText(orderReference, "'orderReference' must not be null or empty");
     log.debug("{}: collect: Request for collecting order {}", this.identifier, orderReference);
 
-    final OrderRefRequest request = new OrderRefRequest(orderReference);
     final WebClient.ResponseSpec retrieve = this.webClient.post()
         .uri(COLLECT_PATH)
-        .bodyValue(request)
+        .body(orderRefBody(orderReference))
         .retrieve();
     return retrieve
         .onRawStatus(StatusCodePredicates.userError(), BankIdErrorBodyExtractors.userErrorBodyExtractor())
         .onRawStatus(StatusCodePredicates.serverError(), BankIdErrorBodyExtractors.serverErrorBodyExtractor())
         .bodyToMono(CollectResponse.class)
-        .doOnSuccess(c -> log.debug("{}: collect. response: [{}]", this.identifier, c.toString()))
+        .transform(m -> this.withTimeout(m, this.collectTimeout, COLLECT_PATH))
+        .transform(this::publishResponse)
+        .doOnSuccess(c -> log.debug("{}: collect. response: [{}]", this.identifier, c))
         .doOnError(e -> {
-          if (e instanceof final WebClientResponseException webClientResponseException) {
+          if (e instanceof BankIdTimeoutException) {
+            log.warn("{}: collect. {}", this.identifier, e.getMessage());
+          }
+          else if (e instanceof final WebClientResponseException webClientResponseException) {
             log.info("{}: collect. Error during collect-call - {} - {} - {}",
                 this.identifier, webClientResponseException.getMessage(), webClientResponseException.getStatusCode(),
                 webClientResponseException.getResponseBodyAsString());
@@ -267,6 +325,159 @@ public class BankIDClientImpl implements BankIDClient {
     return this.qrGenerator;
   }
 
+  /**
+   * Assigns the timeout for the /auth call. The default is {@link #DEFAULT_ORDER_TIMEOUT}. A {@code null} value means
+   * that no timeout, except for the timeouts of the underlying HTTP client, is applied.
+   *
+   * @param authTimeout the timeout
+   */
+  public void setAuthTimeout(final Duration authTimeout) {
+    this.authTimeout = authTimeout;
+  }
+
+  /**
+   * Assigns the timeout for the /sign call. The default is {@link #DEFAULT_ORDER_TIMEOUT}. A {@code null} value means
+   * that no timeout, except for the timeouts of the underlying HTTP client, is applied.
+   *
+   * @param signTimeout the timeout
+   */
+  public void setSignTimeout(final Duration signTimeout) {
+    this.signTimeout = signTimeout;
+  }
+
+  /**
+   * Assigns the timeout for the /collect call. The default is {@link #DEFAULT_COLLECT_TIMEOUT}. A {@code null} value
+   * means that no timeout, except for the timeouts of the underlying HTTP client, is applied.
+   *
+   * @param collectTimeout the timeout
+   */
+  public void setCollectTimeout(final Duration collectTimeout) {
+    this.collectTimeout = collectTimeout;
+  }
+
+  /**
+   * Assigns the timeout for the /cancel call. The default is {@link #DEFAULT_COLLECT_TIMEOUT}. A {@code null} value
+   * means that no timeout, except for the timeouts of the underlying HTTP client, is applied.
+   *
+   * @param cancelTimeout the timeout
+   */
+  public void setCancelTimeout(final Duration cancelTimeout) {
+    this.cancelTimeout = cancelTimeout;
+  }
+
+  /**
+   * Assigns the {@link Scheduler} on which responses (and errors) from the BankID server are delivered to subscribers.
+   * If not assigned, responses are delivered on the threads of the underlying HTTP client (the Netty event loop), which
+   * is the most efficient option as long as subscribers do not block. Assign a bounded scheduler, or one backed by
+   * virtual threads, if downstream processing may block.
+   * <p>
+   * The client does not own the scheduler, i.e., it is the caller's responsibility to dispose it.
+   * </p>
+   *
+   * @param responseScheduler the scheduler
+   */
+  public void setResponseScheduler(final Scheduler responseScheduler) {
+    this.responseScheduler = responseScheduler;
+  }
+
+  /**
+   * Delivers the result of the supplied call on the response scheduler (if assigned).
+   *
+   * @param call the call
+   * @return a {@link Mono} for the call
+   */
+  private <T> Mono<T> publishResponse(final Mono<T> call) {
+    return this.responseScheduler != null ? call.publishOn(this.responseScheduler) : call;
+  }
+
+  /**
+   * Applies the operation timeout to the supplied call and maps all timeout errors, including connect and response
+   * timeouts reported by the HTTP client, to a {@link BankIdTimeoutException}.
+   *
+   * @param call the call
+   * @param timeout the timeout (may be {@code null})
+   * @param path the path of the call (for error reporting)
+   * @return a {@link Mono} for the call
+   */
+  private <T> Mono<T> withTimeout(final Mono<T> call, final Duration timeout, final String path) {
+    return Optional.ofNullable(timeout)
+        .map(call::timeout)
+        .orElse(call)
+        .onErrorMap(BankIDClientImpl::isTimeout,
+            e -> new BankIdTimeoutException("%s-call to BankID did not complete in time".formatted(path), e));
+  }
+
+  /**
+   * Predicate that tells whether the supplied error is a timeout error.
+   *
+   * @param e the error
+   * @return {@code true} if the error represents a timeout and {@code false} otherwise
+   */
+  private static boolean isTimeout(final Throwable e) {
+    Throwable t = e;
+    while (t != null) {
+      if (t instanceof TimeoutException || t instanceof ConnectTimeoutException
+          || t instanceof ReadTimeoutException) {
+        return true;
+      }
+      t = t.getCause() != t ? t.getCause() : null;
+    }
+    return false;
+  }
+
+  /**
+   * Creates a body inserter for an already serialized JSON body.
+   *
+   * @param json the JSON body
+   * @return a {@link BodyInserter}
+   */
+  private static BodyInserter<byte[], ReactiveHttpOutputMessage> jsonBody(final byte[] json) {
+    return (message, context) -> {
+      message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+      message.getHeaders().setContentLength(json.length);
+      return message.writeWith(Mono.fromSupplier(() -> message.bufferFactory().wrap(json)));
+    };
+  }
+
+  /**
+   * Creates a body inserter for the {@code {"orderRef":"..."}} body of /collect and /cancel requests. The body is
+   * written directly into a buffer obtained from the request's buffer factory. Order references are UUID:s, but if an
+   * order reference contains characters that would need JSON escaping, the body is serialized using Jackson.
+   *
+   * @param orderReference the order reference
+   * @return a {@link BodyInserter}
+   */
+  private static BodyInserter<?, ReactiveHttpOutputMessage> orderRefBody(final String orderReference) {
+    if (!isPlainOrderReference(orderReference)) {
+      return BodyInserters.fromValue(new OrderRefRequest(orderReference));
+    }
+    return (message, context) -> {
+      final int length = ORDER_REF_PREFIX.length + orderReference.length() + ORDER_REF_SUFFIX.length;
+      message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+      message.getHeaders().setContentLength(length);
+      return message.writeWith(Mono.fromSupplier(() -> message.bufferFactory().allocateBuffer(length)
+          .write(ORDER_REF_PREFIX)
+          .write(orderReference, StandardCharsets.US_ASCII)
+          .write(ORDER_REF_SUFFIX)));
+    };
+  }
+
+  /**
+   * Tells whether the order reference only contains characters that can be written to JSON as-is.
+   *
+   * @param orderReference the order reference
+   * @return {@code true} if no escaping is needed and {@code false} otherwise
+   */
+  private static boolean isPlainOrderReference(final String orderReference) {
+    for (int i = 0; i < orderReference.length(); i++) {
+      final char c = orderReference.charAt(i);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Given an HTTP status error the method returns its contents as an {@link ErrorResponse}.
    *
@@ -287,7 +498,7 @@ public class BankIDClientImpl implements BankIDClient {
   @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
   @JsonInclude(Include.NON_NULL)
   @SuppressWarnings("unused")
-  private static class AuthnRequest {
+  static class AuthnRequest {
 
     private String endUserIp;
     private Requirement requirement;
@@ -336,7 +547,7 @@ public class BankIDClientImpl implements BankIDClient {
    */
   @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
   @JsonInclude(Include.NON_NULL)
-  private static class SignRequest extends AuthnRequest {
+  static class SignRequest extends AuthnRequest {
 
     private final String userNonVisibleData;
 
@@ -354,7 +565,7 @@ public class BankIDClientImpl implements BankIDClient {
   }
 
   /**
-   * Represents the data sent in /collect and /cancel calls.
+   * Represents the data sent in /collect and /cancel calls (if the order reference needs escaping).
    */
   @JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
   @SuppressWarnings("unused")
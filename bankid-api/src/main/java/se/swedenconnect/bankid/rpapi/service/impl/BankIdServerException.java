@@ -17,6 +17,7 @@ package se.swedenconnect.bankid.rpapi.service.impl;
 
 import se.swedenconnect.bankid.rpapi.LibraryVersion;
 import se.swedenconnect.bankid.rpapi.types.BankIDException;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
 
 /**
  * Exception class for 5XX API errors.
@@ -37,4 +38,15 @@ public class BankIdServerException extends BankIDException {
   public BankIdServerException(final String message) {
     super(message);
   }
+
+  /**
+   * Constructor.
+   *
+   * @param errorCode the error code
+   * @param message the error message
+   * @param cause the cause of the error
+   */
+  protected BankIdServerException(final ErrorCode errorCode, final String message, final Throwable cause) {
+    super(errorCode, message, cause);
+  }
 }
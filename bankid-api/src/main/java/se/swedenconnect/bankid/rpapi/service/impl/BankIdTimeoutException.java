@@ -0,0 +1,42 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.service.impl;
+
+import se.swedenconnect.bankid.rpapi.LibraryVersion;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+
+/**
+ * Exception class for calls to the BankID server that did not complete in time (connect, response or operation
+ * timeout). The error code is always {@link ErrorCode#CLIENT_TIMEOUT}.
+ *
+ * @author Martin Lindström
+ */
+public class BankIdTimeoutException extends BankIdServerException {
+
+  /** For serializing. */
+  private static final long serialVersionUID = LibraryVersion.SERIAL_VERSION_UID;
+
+  /**
+   * Constructor.
+   *
+   * @param message the error message
+   * @param cause the cause of the error
+   */
+  public BankIdTimeoutException(final String message, final Throwable cause) {
+    super(ErrorCode.CLIENT_TIMEOUT, message, cause);
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.service.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+
+/**
+ * A QR generator that, in addition to the raster formats supported by {@link ZxingQRGenerator}, supports the SVG image
+ * format.
+ * <p>
+ * SVG images are rendered directly from the QR code module matrix without going via a raster image. Each row of dark
+ * modules is merged into rectangles, which gives a compact path-based SVG document. The {@code size} parameter is used
+ * as the width and height of the SVG image.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class SvgQRGenerator extends ZxingQRGenerator {
+
+  /** The number of modules used as quiet zone around the QR code (same as the ZXing default). */
+  private static final int QUIET_ZONE_SIZE = 4;
+
+  /** Class logger. */
+  private final Logger log = LoggerFactory.getLogger(SvgQRGenerator.class);
+
+  /**
+   * Constructor setting SVG as the default image format.
+   */
+  public SvgQRGenerator() {
+    this.setDefaultImageFormat(ImageFormat.SVG);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected byte[] generateImage(final String input, final int size, final ImageFormat format) throws IOException {
+    if (!ImageFormat.SVG.equals(format)) {
+      return super.generateImage(input, size, format);
+    }
+    try {
+      log.debug("Generating QR code in {} format based on {}", format, input);
+      final QRCode code = Encoder.encode(input, ErrorCorrectionLevel.L);
+      return toSvg(code.getMatrix(), size).getBytes(StandardCharsets.UTF_8);
+    }
+    catch (final WriterException e) {
+      throw new IOException("Failed to generate QR code: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Renders the supplied module matrix as an SVG document.
+   *
+   * @param matrix the module matrix
+   * @param size the width and height of the image
+   * @return an SVG document
+   */
+  private static String toSvg(final ByteMatrix matrix, final int size) {
+    final int dimension = matrix.getWidth() + 2 * QUIET_ZONE_SIZE;
+
+    final StringBuilder sb = new StringBuilder(4096);
+    sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ")
+        .append(dimension).append(' ').append(dimension)
+        .append("\" width=\"").append(size).append("\" height=\"").append(size)
+        .append("\" shape-rendering=\"crispEdges\">")
+        .append("<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>")
+        .append("<path fill=\"#000\" d=\"");
+
+    for (int y = 0; y < matrix.getHeight(); y++) {
+      int x = 0;
+      while (x < matrix.getWidth()) {
+        if (matrix.get(x, y) != 1) {
+          x++;
+          continue;
+        }
+        final int start = x;
+        while (x < matrix.getWidth() && matrix.get(x, y) == 1) {
+          x++;
+        }
+        final int length = x - start;
+        sb.append('M').append(start + QUIET_ZONE_SIZE).append(' ').append(y + QUIET_ZONE_SIZE)
+            .append('h').append(length).append("v1h-").append(length).append('z');
+      }
+    }
+    sb.append("\"/></svg>");
+    return sb.toString();
+  }
+
+  /**
+   * All image formats are supported by this implementation.
+   */
+  @Override
+  protected boolean isSupported(final ImageFormat format) {
+    return true;
+  }
+
+}
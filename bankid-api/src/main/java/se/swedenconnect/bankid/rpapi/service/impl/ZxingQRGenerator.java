@@ -17,7 +17,6 @@ package se.swedenconnect.bankid.rpapi.service.impl;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.time.Instant;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +30,8 @@ import com.google.zxing.qrcode.QRCodeWriter;
 /**
  * A QR generator implementation based on the ZXing open source library.
  * <p>
- * <b>Note:</b> This implementation does not support the SVG image format.
+ * <b>Note:</b> This implementation does not support the SVG image format. Use {@link SvgQRGenerator} for SVG
+ * support.
  * </p>
  *
  * @author Martin Lindström
@@ -43,30 +43,10 @@ public class ZxingQRGenerator extends AbstractQRGenerator {
 
   /** {@inheritDoc} */
   @Override
-  public byte[] generateQRCodeImage(final String autoStartToken, final int size, final ImageFormat format)
-      throws IOException {
-    return this.generateQRCode(this.buildInput(autoStartToken), size, format);
-  }
-
-  /** {@inheritDoc} */
-  @Override
-  public byte[] generateAnimatedQRCodeImage(final String qrStartToken, final String qrStartSecret,
-      final Instant orderTime, final int size, final ImageFormat format) throws IOException {
-    return this.generateQRCode(this.buildAnimatedInput(qrStartToken, qrStartSecret, orderTime), size, format);
-  }
-
-  /**
-   * Generates the QR code image based on the supplied input string.
-   *
-   * @param input the input
-   * @param size the width and height of the generated QR code (in pixels)
-   * @param format the format for the generated QR code
-   * @return an byte array representing the generated QR code
-   * @throws IOException for errors during generation
-   */
-  private byte[] generateQRCode(final String input, final int size, final ImageFormat format) throws IOException {
-    if (ImageFormat.SVG.equals(format)) {
-      throw new IOException("Image format SVG is not supported by " + this.getClass().getSimpleName());
+  protected byte[] generateImage(final String input, final int size, final ImageFormat format) throws IOException {
+    if (!this.isSupported(format)) {
+      throw new IOException("Image format %s is not supported by %s"
+          .formatted(format, this.getClass().getSimpleName()));
     }
     try {
       log.debug("Generating QR code in {} format based on {}", format, input);
@@ -81,12 +61,22 @@ public class ZxingQRGenerator extends AbstractQRGenerator {
     }
   }
 
+  /**
+   * Tells whether the supplied image format is supported by this generator.
+   *
+   * @param format the image format
+   * @return {@code true} if the format is supported, and {@code false} otherwise
+   */
+  protected boolean isSupported(final ImageFormat format) {
+    return !ImageFormat.SVG.equals(format);
+  }
+
   /** {@inheritDoc} */
   @Override
   public void setDefaultImageFormat(final ImageFormat defaultImageFormat) {
-    if (ImageFormat.SVG.equals(defaultImageFormat)) {
+    if (!this.isSupported(defaultImageFormat)) {
       throw new IllegalArgumentException(
-        "Image format SVG is not supported by " + this.getClass().getSimpleName());
+        "Image format %s is not supported by %s".formatted(defaultImageFormat, this.getClass().getSimpleName()));
     }
     super.setDefaultImageFormat(defaultImageFormat);
   }
@@ -15,6 +15,7 @@
  */
 package se.swedenconnect.bankid.rpapi.support;
 
+import io.netty.channel.ChannelOption;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import jakarta.annotation.Nonnull;
@@ -28,7 +29,11 @@ import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
 import se.swedenconnect.security.credential.KeyStoreCredential;
 import se.swedenconnect.security.credential.PkiCredential;
 import se.swedenconnect.security.credential.factory.KeyStoreBuilder;
@@ -37,6 +42,8 @@ import se.swedenconnect.security.credential.utils.X509Utils;
 
 import java.io.InputStream;
 import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Optional;
@@ -86,6 +93,21 @@ public class WebClientFactoryBean extends AbstractFactoryBean<WebClient> {
   /** The credential holding the client TLS key and certificate (BankID relying party certificate). */
   private final PkiCredential rpCredential;
 
+  /** The connection provider (pool) to use. If not assigned, the Reactor Netty global pool is used. */
+  private ConnectionProvider connectionProvider;
+
+  /** The event loop resources to use. If not assigned, the Reactor Netty global resources are used. */
+  private LoopResources loopResources;
+
+  /** Whether HTTP/2 should be offered to the server (via ALPN). */
+  private boolean http2Enabled = false;
+
+  /** The connect timeout. */
+  private Duration connectTimeout;
+
+  /** The response timeout. */
+  private Duration responseTimeout;
+
   /**
    * Creates a factory bean for creating {@link WebClient}s.
    *
@@ -188,14 +210,38 @@ public class WebClientFactoryBean extends AbstractFactoryBean<WebClient> {
   @Nonnull
   public WebClient createInstance() throws Exception {
     try (final InputStream rootIs = this.trustedRoot.getInputStream()) {
-      final SslContext sslContext = SslContextBuilder.forClient()
-          .keyManager(this.rpCredential.getPrivateKey(), this.rpCredential.getCertificate())
-          .trustManager(X509Utils.decodeCertificate(rootIs))
-          .build();
+      final X509Certificate rootCertificate = X509Utils.decodeCertificate(rootIs);
+
+      HttpClient client = Optional.ofNullable(this.connectionProvider)
+          .map(HttpClient::create)
+          .orElseGet(HttpClient::create);
+      if (this.loopResources != null) {
+        client = client.runOn(this.loopResources);
+      }
+      client = client.proxyWithSystemProperties();
+      if (this.connectTimeout != null) {
+        client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) this.connectTimeout.toMillis());
+      }
+      if (this.responseTimeout != null) {
+        client = client.responseTimeout(this.responseTimeout);
+      }
 
-      final HttpClient client = HttpClient.create()
-          .proxyWithSystemProperties()
-          .secure(spec -> spec.sslContext(sslContext));
+      if (this.http2Enabled) {
+        final Http2SslContextSpec sslContextSpec = Http2SslContextSpec.forClient()
+            .configure(b -> b
+                .keyManager(this.rpCredential.getPrivateKey(), this.rpCredential.getCertificate())
+                .trustManager(rootCertificate));
+        client = client
+            .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+            .secure(spec -> spec.sslContext(sslContextSpec));
+      }
+      else {
+        final SslContext sslContext = SslContextBuilder.forClient()
+            .keyManager(this.rpCredential.getPrivateKey(), this.rpCredential.getCertificate())
+            .trustManager(rootCertificate)
+            .build();
+        client = client.secure(spec -> spec.sslContext(sslContext));
+      }
       final ClientHttpConnector connector = new ReactorClientHttpConnector(client);
 
       final WebClient.Builder builder = Optional.ofNullable(this.webClientBuilder).orElseGet(WebClient::builder);
@@ -216,4 +262,58 @@ public class WebClientFactoryBean extends AbstractFactoryBean<WebClient> {
     this.webClientBuilder = webClientBuilder;
   }
 
+  /**
+   * Assigns the {@link ConnectionProvider} to use for the created client. By sharing one connection provider between
+   * several factories, all relying party clients will use the same connection pool configuration (Reactor Netty keeps
+   * separate pools per remote address and TLS configuration within the provider). If not assigned, the Reactor Netty
+   * global connection provider, with default settings, is used.
+   *
+   * @param connectionProvider the connection provider
+   */
+  public void setConnectionProvider(final ConnectionProvider connectionProvider) {
+    this.connectionProvider = connectionProvider;
+  }
+
+  /**
+   * Assigns the {@link LoopResources} (event loop threads) to use for the created client. If not assigned, the Reactor
+   * Netty global resources are used.
+   *
+   * @param loopResources the loop resources
+   */
+  public void setLoopResources(final LoopResources loopResources) {
+    this.loopResources = loopResources;
+  }
+
+  /**
+   * Tells whether HTTP/2 should be offered to the BankID server. If enabled, both {@code h2} and {@code http/1.1} are
+   * offered during the TLS handshake (ALPN), and the client falls back to HTTP/1.1 if the server does not select
+   * {@code h2}. With HTTP/2, concurrent requests are multiplexed over a few connections instead of one connection per
+   * outstanding request. The default is {@code false}.
+   *
+   * @param http2Enabled whether HTTP/2 should be offered
+   */
+  public void setHttp2Enabled(final boolean http2Enabled) {
+    this.http2Enabled = http2Enabled;
+  }
+
+  /**
+   * Assigns the timeout for establishing a connection to the BankID server. If not assigned, the Reactor Netty default
+   * (30 seconds) is used.
+   *
+   * @param connectTimeout the connect timeout
+   */
+  public void setConnectTimeout(final Duration connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  /**
+   * Assigns the maximum time to wait for a response from the BankID server after a request has been sent. If not
+   * assigned, no response timeout is applied by the HTTP client.
+   *
+   * @param responseTimeout the response timeout
+   */
+  public void setResponseTimeout(final Duration responseTimeout) {
+    this.responseTimeout = responseTimeout;
+  }
+
 }
@@ -16,7 +16,9 @@
 package se.swedenconnect.bankid.rpapi.types;
 
 import java.io.Serializable;
+import java.util.Base64;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import se.swedenconnect.bankid.rpapi.LibraryVersion;
@@ -31,6 +33,9 @@ public class CompletionData implements Serializable {
 
   private static final long serialVersionUID = LibraryVersion.SERIAL_VERSION_UID;
 
+  /** The maximum number of characters of the signature and OCSP response that are included in {@link #toString()}. */
+  private static final int TO_STRING_MAX_LENGTH = 32;
+
   /** Information related to the user. */
   private User user;
 
@@ -135,6 +140,17 @@ public class CompletionData implements Serializable {
     return this.signature;
   }
 
+  /**
+   * Returns the decoded BankID signature. The signature is decoded on each call, so callers that need the bytes more
+   * than once should keep the result.
+   *
+   * @return the BankID signature, or {@code null} if not set
+   */
+  @JsonIgnore
+  public byte[] getSignatureBytes() {
+    return decode(this.signature);
+  }
+
   /**
    * Assigns the Base64-encoded BankID signature.
    *
@@ -153,6 +169,17 @@ public class CompletionData implements Serializable {
     return this.ocspResponse;
   }
 
+  /**
+   * Returns the decoded OCSP-response. The response is decoded on each call, so callers that need the bytes more than
+   * once should keep the result.
+   *
+   * @return the OCSP-response, or {@code null} if not set
+   */
+  @JsonIgnore
+  public byte[] getOcspResponseBytes() {
+    return decode(this.ocspResponse);
+  }
+
   /**
    * Assigns the Base64-encoded OCSP-response.
    *
@@ -162,11 +189,37 @@ public class CompletionData implements Serializable {
     this.ocspResponse = ocspResponse;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Returns a string representation of the completion data. The signature and OCSP response are truncated.
+   */
   @Override
   public String toString() {
     return String.format("user=[%s], device=[%s], bankIdIssueDate='%s', stepUp=[%s], signature='%s', ocspResponse='%s'",
-        this.user, this.device, this.bankIdIssueDate, this.stepUp, this.signature, this.ocspResponse);
+        this.user, this.device, this.bankIdIssueDate, this.stepUp,
+        truncate(this.signature), truncate(this.ocspResponse));
+  }
+
+  /**
+   * Decodes a Base64-encoded string.
+   *
+   * @param value the string to decode (may be {@code null})
+   * @return the decoded bytes, or {@code null}
+   */
+  private static byte[] decode(final String value) {
+    return value != null ? Base64.getDecoder().decode(value) : null;
+  }
+
+  /**
+   * Truncates the supplied value for logging.
+   *
+   * @param value the value (may be {@code null})
+   * @return the (possibly) truncated value
+   */
+  private static String truncate(final String value) {
+    if (value == null || value.length() <= TO_STRING_MAX_LENGTH) {
+      return value;
+    }
+    return "%s...(%d chars)".formatted(value.substring(0, TO_STRING_MAX_LENGTH), value.length());
   }
 
   /**
@@ -363,7 +416,7 @@ public class CompletionData implements Serializable {
     /** {@inheritDoc} */
     @Override
     public String toString() {
-      return String.format("mrtd=%d", this.mrtd);
+      return String.format("mrtd=%s", this.mrtd);
     }
 
   }
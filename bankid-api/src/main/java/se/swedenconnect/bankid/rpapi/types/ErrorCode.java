@@ -65,6 +65,9 @@ public enum ErrorCode {
   /** ErrorCode - Maintenance */
   MAINTENANCE("Maintenance"),
 
+  /** Not reported by BankID - the BankID server did not respond within the configured time. */
+  CLIENT_TIMEOUT("clientTimeout"),
+
   /** Last resort. */
   UNKNOWN_ERROR("unknown");
 
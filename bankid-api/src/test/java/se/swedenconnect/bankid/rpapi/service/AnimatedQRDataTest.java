@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases for {@link AnimatedQRData}.
+ *
+ * @author Martin Lindström
+ */
+public class AnimatedQRDataTest {
+
+  private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-01-01T10:00:00.500Z"), ZoneOffset.UTC);
+
+  @Test
+  public void testBuild() throws Exception {
+    final String qrStartToken = "67df3917-fa0d-44e5-b327-edcc928297f8";
+    final String qrStartSecret = "d28db9a7-4cde-429e-a983-359be676944c";
+
+    final Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(new SecretKeySpec(qrStartSecret.getBytes(StandardCharsets.US_ASCII), "HmacSHA256"));
+    final String expected = "bankid." + qrStartToken + ".7."
+        + HexFormat.of().formatHex(mac.doFinal("7".getBytes(StandardCharsets.US_ASCII)));
+
+    Assertions.assertEquals(expected, AnimatedQRData.build(qrStartToken, qrStartSecret, 7));
+
+    // The QR time is calculated using the supplied clock ...
+    Assertions.assertEquals(expected,
+        AnimatedQRData.build(qrStartToken, qrStartSecret, CLOCK.instant().minusMillis(7200), CLOCK));
+    Assertions.assertEquals(7, AnimatedQRData.getQrTime(CLOCK.instant().minusMillis(7999), CLOCK));
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.service;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import se.swedenconnect.bankid.rpapi.service.impl.ZxingQRGenerator;
+
+/**
+ * Test cases for the default methods of {@link QRGenerator}.
+ *
+ * @author Martin Lindström
+ */
+public class QRGeneratorTest {
+
+  @Test
+  public void testGenerateAnimatedQRCodeData() {
+    final QRGenerator generator = Mockito.mock(QRGenerator.class, Mockito.CALLS_REAL_METHODS);
+
+    final String qrStartToken = "67df3917-fa0d-44e5-b327-edcc928297f8";
+    final String qrStartSecret = "d28db9a7-4cde-429e-a983-359be676944c";
+    final Instant orderTime = Instant.now().minusSeconds(3);
+
+    // The default implementation should give the same data as the data encoded by the QR generators ...
+    final String data = generator.generateAnimatedQRCodeData(qrStartToken, qrStartSecret, orderTime);
+    Assertions.assertTrue(data.startsWith("bankid." + qrStartToken + ".3."));
+    Assertions.assertEquals(
+        new ZxingQRGenerator().generateAnimatedQRCodeData(qrStartToken, qrStartSecret, orderTime), data);
+  }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.service.impl;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Mono;
+import se.swedenconnect.bankid.rpapi.service.AuthenticateRequest;
+import se.swedenconnect.bankid.rpapi.service.DataToSign;
+import se.swedenconnect.bankid.rpapi.service.SignatureRequest;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+import se.swedenconnect.bankid.rpapi.types.Requirement;
+
+/**
+ * Test cases for {@link BankIDClientImpl}.
+ *
+ * @author Martin Lindström
+ */
+public class BankIDClientImplTest {
+
+  @Test
+  public void testCollectTimeout() {
+    final WebClient webClient = WebClient.builder()
+        .baseUrl("https://bankid.example.com")
+        .exchangeFunction(r -> Mono.never())
+        .build();
+    final BankIDClientImpl client = new BankIDClientImpl("rp", webClient, null);
+    client.setCollectTimeout(Duration.ofMillis(50));
+
+    final BankIdTimeoutException e = Assertions.assertThrows(BankIdTimeoutException.class,
+        () -> client.collect("131daac9-16c6-4618-beb0-365768f37288").block(Duration.ofSeconds(5)));
+    Assertions.assertEquals(ErrorCode.CLIENT_TIMEOUT, e.getErrorCode());
+  }
+
+  @Test
+  public void testCancelTimeout() {
+    final WebClient webClient = WebClient.builder()
+        .baseUrl("https://bankid.example.com")
+        .exchangeFunction(r -> Mono.never())
+        .build();
+    final BankIDClientImpl client = new BankIDClientImpl("rp", webClient, null);
+    client.setCancelTimeout(Duration.ofMillis(50));
+
+    Assertions.assertThrows(BankIdTimeoutException.class,
+        () -> client.cancel("131daac9-16c6-4618-beb0-365768f37288").block(Duration.ofSeconds(5)));
+  }
+
+  @Test
+  public void testSignTimeout() {
+    final WebClient webClient = WebClient.builder()
+        .baseUrl("https://bankid.example.com")
+        .exchangeFunction(r -> Mono.never())
+        .build();
+    final BankIDClientImpl client = new BankIDClientImpl("rp", webClient, null);
+    client.setSignTimeout(Duration.ofMillis(50));
+
+    final DataToSign dataToSign = new DataToSign();
+    dataToSign.setUserVisibleData("Data visible to user");
+    final BankIdTimeoutException e = Assertions.assertThrows(BankIdTimeoutException.class,
+        () -> client.sign(new SignatureRequest("127.0.0.1", dataToSign, null)).block(Duration.ofSeconds(5)));
+    Assertions.assertEquals(ErrorCode.CLIENT_TIMEOUT, e.getErrorCode());
+  }
+
+  @Test
+  public void testRequestBodies() {
+    final List<String> bodies = new ArrayList<>();
+    final List<MediaType> contentTypes = new ArrayList<>();
+    final WebClient webClient = WebClient.builder()
+        .baseUrl("https://bankid.example.com")
+        .exchangeFunction(r -> {
+          final MockClientHttpRequest request = new MockClientHttpRequest(r.method(), r.url());
+          return r.writeTo(request, ExchangeStrategies.withDefaults())
+              .then(Mono.defer(request::getBodyAsString))
+              .map(b -> {
+                bodies.add(b);
+                contentTypes.add(request.getHeaders().getContentType());
+                return ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"orderRef\":\"131daac9-16c6-4618-beb0-365768f37288\",\"status\":\"pending\"}")
+                    .build();
+              });
+        })
+        .build();
+    final BankIDClientImpl client = new BankIDClientImpl("rp", webClient, null);
+
+    client.collect("131daac9-16c6-4618-beb0-365768f37288").block();
+    Assertions.assertEquals("{\"orderRef\":\"131daac9-16c6-4618-beb0-365768f37288\"}", bodies.get(0));
+    Assertions.assertEquals(MediaType.APPLICATION_JSON, contentTypes.get(0));
+
+    // Order references that need escaping are serialized by Jackson
+    client.cancel("a\"b").block();
+    Assertions.assertEquals("{\"orderRef\":\"a\\\"b\"}", bodies.get(1));
+
+    client.authenticate(new AuthenticateRequest("127.0.0.1", null, null)).block();
+    Assertions.assertEquals("{\"endUserIp\":\"127.0.0.1\"}", bodies.get(2));
+    Assertions.assertEquals(MediaType.APPLICATION_JSON, contentTypes.get(2));
+  }
+
+  @Test
+  public void testRequestBodiesMatchCodecOutput() {
+    final List<String> bodies = new ArrayList<>();
+    final WebClient webClient = WebClient.builder()
+        .baseUrl("https://bankid.example.com")
+        .exchangeFunction(r -> writeBody(r).map(b -> {
+          bodies.add(b);
+          return ClientResponse.create(HttpStatus.OK)
+              .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+              .body("{\"orderRef\":\"131daac9-16c6-4618-beb0-365768f37288\"}")
+              .build();
+        }))
+        .build();
+    final BankIDClientImpl client = new BankIDClientImpl("rp", webClient, null);
+
+    final Requirement requirement = Requirement.builder()
+        .pinCode(true)
+        .personalNumber("196911292032")
+        .build();
+    final DataToSign dataToSign = new DataToSign();
+    dataToSign.setDisplayText("Text with \"quotes\" and åäö");
+    dataToSign.setUserNonVisibleData("bm9uLXZpc2libGU=");
+
+    client.authenticate(new AuthenticateRequest("127.0.0.1", dataToSign, requirement)).block();
+    Assertions.assertEquals(
+        writeBody(codecRequest(new BankIDClientImpl.AuthnRequest("127.0.0.1", requirement, dataToSign))).block(),
+        bodies.get(0));
+
+    client.sign(new SignatureRequest("127.0.0.1", dataToSign, requirement)).block();
+    Assertions.assertEquals(
+        writeBody(codecRequest(new BankIDClientImpl.SignRequest("127.0.0.1", requirement, dataToSign))).block(),
+        bodies.get(1));
+  }
+
+  private static ClientRequest codecRequest(final Object body) {
+    return ClientRequest.create(HttpMethod.POST, URI.create("https://bankid.example.com"))
+        .body(BodyInserters.fromValue(body))
+        .build();
+  }
+
+  private static Mono<String> writeBody(final ClientRequest clientRequest) {
+    final MockClientHttpRequest request = new MockClientHttpRequest(clientRequest.method(), clientRequest.url());
+    return clientRequest.writeTo(request, ExchangeStrategies.withDefaults())
+        .then(Mono.defer(request::getBodyAsString));
+  }
+
+  @Test
+  public void testCollectAll() {
+    final Pattern orderRef = Pattern.compile("\"orderRef\":\"([^\"]+)\"");
+    final AtomicInteger calls = new AtomicInteger();
+    final WebClient webClient = WebClient.builder()
+        .baseUrl("https://bankid.example.com")
+        .exchangeFunction(r -> {
+          final MockClientHttpRequest request = new MockClientHttpRequest(r.method(), r.url());
+          return r.writeTo(request, ExchangeStrategies.withDefaults())
+              .then(Mono.defer(request::getBodyAsString))
+              .map(b -> {
+                calls.incrementAndGet();
+                final Matcher m = orderRef.matcher(b);
+                Assertions.assertTrue(m.find());
+                if ("error".equals(m.group(1))) {
+                  return ClientResponse.create(HttpStatus.BAD_REQUEST)
+                      .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                      .body("{\"errorCode\":\"notFound\",\"details\":\"No such order\"}")
+                      .build();
+                }
+                return ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"orderRef\":\"%s\",\"status\":\"pending\"}".formatted(m.group(1)))
+                    .build();
+              });
+        })
+        .build();
+    final BankIDClientImpl client = new BankIDClientImpl("rp", webClient, null);
+
+    final List<String> collected = client.collectAll(List.of("or-1", "or-2", "or-1", "or-3"), 2)
+        .map(CollectResponse::getOrderReference)
+        .sort()
+        .collectList()
+        .block();
+    Assertions.assertEquals(List.of("or-1", "or-2", "or-3"), collected);
+    Assertions.assertEquals(3, calls.get());
+
+    // An error for one order is reported after the other orders have been collected
+    final List<String> received = new ArrayList<>();
+    Assertions.assertThrows(RuntimeException.class, () -> client.collectAll(List.of("error", "or-4"))
+        .doOnNext(c -> received.add(c.getOrderReference()))
+        .blockLast());
+    Assertions.assertEquals(List.of("or-4"), received);
+  }
+
+}
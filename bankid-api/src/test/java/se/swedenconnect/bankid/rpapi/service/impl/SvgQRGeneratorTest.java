@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.service.impl;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+
+import se.swedenconnect.bankid.rpapi.service.QRGenerator;
+import se.swedenconnect.bankid.rpapi.service.QRGenerator.ImageFormat;
+
+/**
+ * Test cases for the {@code SvgQRGenerator} class.
+ *
+ * @author Martin Lindström
+ */
+public class SvgQRGeneratorTest {
+
+  private static final Pattern VIEWBOX = Pattern.compile("viewBox=\"0 0 (\\d+) (\\d+)\"");
+
+  private static final Pattern RUN = Pattern.compile("M(\\d+) (\\d+)h(\\d+)v1h-\\d+z");
+
+  @Test
+  public void testGenerate() throws Exception {
+    final QRGenerator generator = new SvgQRGenerator();
+
+    final String autoStartToken = "46f6aa68-a520-49d8-9be7-f0726d038c26";
+
+    final byte[] bytes = generator.generateQRCodeImage(autoStartToken);
+    final String svg = new String(bytes, StandardCharsets.UTF_8);
+    Assertions.assertTrue(svg.startsWith("<svg "));
+    Assertions.assertTrue(svg.contains("width=\"300\""));
+    Assertions.assertTrue(decodeSvg(svg).endsWith(autoStartToken));
+
+    // Raster formats are still supported
+    Assertions.assertTrue(generator.generateQRCodeImage(autoStartToken, 100, ImageFormat.PNG).length > 0);
+  }
+
+  @Test
+  public void testGenerateAnimated() throws Exception {
+    final QRGenerator generator = new SvgQRGenerator();
+
+    final String qrStartToken = "67df3917-fa0d-44e5-b327-edcc928297f8";
+    final String qrStartSecret = "d28db9a7- 4cde-429e-a983-359be676944c";
+
+    final String image = generator.generateAnimatedQRCodeBase64Image(qrStartToken, qrStartSecret, Instant.now());
+    Assertions.assertTrue(image.startsWith("data:image/svg+xml;base64, "));
+
+    final String svg = new String(
+        Base64.getDecoder().decode(image.substring("data:image/svg+xml;base64, ".length())), StandardCharsets.UTF_8);
+    Assertions.assertTrue(decodeSvg(svg).startsWith("bankid." + qrStartToken + "."));
+  }
+
+  /**
+   * Rasterizes the SVG produced by the generator and decodes the QR code.
+   *
+   * @param svg the SVG document
+   * @return the encoded string
+   * @throws Exception for errors
+   */
+  private static String decodeSvg(final String svg) throws Exception {
+    final int scale = 4;
+    final Matcher viewBox = VIEWBOX.matcher(svg);
+    Assertions.assertTrue(viewBox.find());
+    final int dimension = Integer.parseInt(viewBox.group(1));
+
+    final BufferedImage image =
+        new BufferedImage(dimension * scale, dimension * scale, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D graphics = image.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+    graphics.setColor(Color.BLACK);
+
+    final Matcher run = RUN.matcher(svg);
+    while (run.find()) {
+      graphics.fillRect(Integer.parseInt(run.group(1)) * scale, Integer.parseInt(run.group(2)) * scale,
+          Integer.parseInt(run.group(3)) * scale, scale);
+    }
+    graphics.dispose();
+
+    final LuminanceSource source = new BufferedImageLuminanceSource(image);
+    final BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+    return new MultiFormatReader().decode(bitmap).getText();
+  }
+
+}
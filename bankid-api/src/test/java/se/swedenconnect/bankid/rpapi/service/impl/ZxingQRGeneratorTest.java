@@ -18,9 +18,18 @@ package se.swedenconnect.bankid.rpapi.service.impl;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import javax.imageio.ImageIO;
 
 import org.junit.jupiter.api.Assertions;
@@ -42,6 +51,8 @@ import se.swedenconnect.bankid.rpapi.service.QRGenerator.ImageFormat;
  */
 public class ZxingQRGeneratorTest {
 
+  private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-01-01T10:00:00.500Z"), ZoneOffset.UTC);
+
   @Test
   public void testGenerate() throws Exception {
     final QRGenerator generator = new ZxingQRGenerator();
@@ -77,6 +88,185 @@ public class ZxingQRGeneratorTest {
     Assertions.assertTrue(textInQR.startsWith("bankid." + qrStartToken + "."));
   }
 
+  @Test
+  public void testAnimatedFramesAreCached() throws Exception {
+    final ZxingQRGenerator generator = new ZxingQRGenerator();
+    generator.setClock(CLOCK);
+
+    final String qrStartToken = "67df3917-fa0d-44e5-b327-edcc928297f8";
+    final String qrStartSecret = "d28db9a7- 4cde-429e-a983-359be676944c";
+    final Instant orderTime = CLOCK.instant().minusMillis(100);
+
+    final String image1 = generator.generateAnimatedQRCodeBase64Image(qrStartToken, qrStartSecret, orderTime);
+    final String image2 = generator.generateAnimatedQRCodeBase64Image(qrStartToken, qrStartSecret, orderTime);
+    Assertions.assertSame(image1, image2);
+
+    // Another size should give another image
+    final String image3 =
+        generator.generateAnimatedQRCodeBase64Image(qrStartToken, qrStartSecret, orderTime, 200, ImageFormat.PNG);
+    Assertions.assertNotEquals(image1, image3);
+
+    // And another second should also give another image
+    final String image4 = generator.generateAnimatedQRCodeBase64Image(
+        qrStartToken, qrStartSecret, orderTime.minusSeconds(1));
+    Assertions.assertNotEquals(image1, image4);
+
+    // Callers get a copy of the cached image
+    final byte[] bytes = generator.generateAnimatedQRCodeImage(
+        qrStartToken, qrStartSecret, orderTime, 300, ImageFormat.PNG);
+    Arrays.fill(bytes, (byte) 0);
+    Assertions.assertTrue(decodeQRBytes(generator.generateAnimatedQRCodeImage(
+        qrStartToken, qrStartSecret, orderTime, 300, ImageFormat.PNG)).startsWith("bankid." + qrStartToken + ".0."));
+
+    // Turn off caching
+    generator.setFrameCacheSize(0);
+    final String image5 = generator.generateAnimatedQRCodeBase64Image(qrStartToken, qrStartSecret, orderTime);
+    Assertions.assertNotSame(image1, image5);
+  }
+
+  @Test
+  public void testPreGenerateFrames() throws Exception {
+    final AtomicInteger generated = new AtomicInteger();
+    final ZxingQRGenerator generator = new ZxingQRGenerator() {
+      @Override
+      protected byte[] generateImage(final String input, final int size, final ImageFormat format)
+          throws IOException {
+        generated.incrementAndGet();
+        return super.generateImage(input, size, format);
+      }
+    };
+    generator.setClock(CLOCK);
+    generator.setPreGenerateFrames(3);
+    generator.setPreGenerationExecutor(Runnable::run);
+
+    final String qrStartToken = "67df3917-fa0d-44e5-b327-edcc928297f8";
+    final String qrStartSecret = "d28db9a7- 4cde-429e-a983-359be676944c";
+    final Instant orderTime = CLOCK.instant().minusMillis(100);
+
+    // The current frame and the next three frames ...
+    generator.generateAnimatedQRCodeImage(qrStartToken, qrStartSecret, orderTime, 300, ImageFormat.PNG);
+    Assertions.assertEquals(4, generated.get());
+
+    // The frame for "two seconds later" should already be there, and only the two frames that are new to
+    // the window should be generated ...
+    final byte[] bytes = generator.generateAnimatedQRCodeImage(
+        qrStartToken, qrStartSecret, orderTime.minusSeconds(2), 300, ImageFormat.PNG);
+    Assertions.assertEquals(6, generated.get());
+    Assertions.assertTrue(decodeQRBytes(bytes).startsWith("bankid." + qrStartToken + ".2."));
+  }
+
+  @Test
+  public void testFrameCacheIsBounded() throws Exception {
+    final AtomicInteger generated = new AtomicInteger();
+    final ZxingQRGenerator generator = new ZxingQRGenerator() {
+      @Override
+      protected byte[] generateImage(final String input, final int size, final ImageFormat format)
+          throws IOException {
+        generated.incrementAndGet();
+        return super.generateImage(input, size, format);
+      }
+    };
+    generator.setFrameCacheSize(2);
+
+    final String qrStartSecret = "d28db9a7- 4cde-429e-a983-359be676944c";
+    for (int i = 0; i < 3; i++) {
+      generator.setClock(Clock.offset(CLOCK, Duration.ofMillis(i)));
+      generator.generateAnimatedQRCodeBase64Image("token-" + i, qrStartSecret, CLOCK.instant(), 100, ImageFormat.PNG);
+    }
+    Assertions.assertEquals(3, generated.get());
+
+    // The most recent frame is still cached ...
+    generator.generateAnimatedQRCodeBase64Image("token-2", qrStartSecret, CLOCK.instant(), 100, ImageFormat.PNG);
+    Assertions.assertEquals(3, generated.get());
+  }
+
+  @Test
+  public void testFullFrameCache() throws Exception {
+    final AtomicInteger generated = new AtomicInteger();
+    final ZxingQRGenerator generator = new ZxingQRGenerator() {
+      @Override
+      protected byte[] generateImage(final String input, final int size, final ImageFormat format)
+          throws IOException {
+        generated.incrementAndGet();
+        return super.generateImage(input, size, format);
+      }
+    };
+    generator.setClock(CLOCK);
+    generator.setFrameCacheSize(10);
+
+    // Fill the cache with frames that have not expired, and keep adding frames ...
+    final String qrStartSecret = "d28db9a7- 4cde-429e-a983-359be676944c";
+    for (int i = 0; i < 500; i++) {
+      generator.generateAnimatedQRCodeBase64Image("token-" + i, qrStartSecret, CLOCK.instant(), 100, ImageFormat.PNG);
+    }
+    Assertions.assertEquals(500, generated.get());
+
+    // Each new frame only evicted the oldest frame, so the last 10 frames are still cached ...
+    for (int i = 490; i < 500; i++) {
+      generator.generateAnimatedQRCodeBase64Image("token-" + i, qrStartSecret, CLOCK.instant(), 100, ImageFormat.PNG);
+    }
+    Assertions.assertEquals(500, generated.get());
+
+    // And a frame for an ongoing order is still served from the cache when the cache is full ...
+    final String image1 =
+        generator.generateAnimatedQRCodeBase64Image("ongoing", qrStartSecret, CLOCK.instant(), 100, ImageFormat.PNG);
+    final String image2 =
+        generator.generateAnimatedQRCodeBase64Image("ongoing", qrStartSecret, CLOCK.instant(), 100, ImageFormat.PNG);
+    Assertions.assertSame(image1, image2);
+    Assertions.assertEquals(501, generated.get());
+  }
+
+  @Test
+  public void testGeneratorNotImplementingGenerateImage() throws Exception {
+    // A generator written before generateImage was introduced ...
+    final ZxingQRGenerator delegate = new ZxingQRGenerator();
+    final AbstractQRGenerator generator = new AbstractQRGenerator() {
+
+      @Override
+      public byte[] generateQRCodeImage(final String autoStartToken, final int size, final ImageFormat format)
+          throws IOException {
+        return delegate.generateQRCodeImage(autoStartToken, size, format);
+      }
+
+      @Override
+      public byte[] generateAnimatedQRCodeImage(final String qrStartToken, final String qrStartSecret,
+          final Instant orderTime, final int size, final ImageFormat format) throws IOException {
+        return delegate.generateAnimatedQRCodeImage(qrStartToken, qrStartSecret, orderTime, size, format);
+      }
+    };
+
+    final String qrStartToken = "67df3917-fa0d-44e5-b327-edcc928297f8";
+    final String image = generator.generateAnimatedQRCodeBase64Image(
+        qrStartToken, "d28db9a7- 4cde-429e-a983-359be676944c", Instant.now());
+    Assertions.assertTrue(decodeQRBytes(Base64.getDecoder().decode(image.substring("data:image/png;base64, ".length())))
+        .startsWith("bankid." + qrStartToken + "."));
+  }
+
+  @Test
+  public void testAnimatedInput() throws Exception {
+    final ZxingQRGenerator generator = new ZxingQRGenerator();
+
+    final String qrStartToken = "67df3917-fa0d-44e5-b327-edcc928297f8";
+    final String[] secrets = { "d28db9a7-4cde-429e-a983-359be676944c", "a5a9e6e5-7c3b-4d1e-9a13-2f8f1c3b0d7e" };
+
+    // Alternate between secrets to make sure that the correct key is used for each calculation ...
+    for (int i = 0; i < 6; i++) {
+      final String secret = secrets[i % 2];
+      final String input = generator.buildAnimatedInput(qrStartToken, secret, i);
+
+      final Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.US_ASCII), "HmacSHA256"));
+      final String expectedAuthCode = String.format("%064x",
+          new BigInteger(1, mac.doFinal(Integer.toString(i).getBytes(StandardCharsets.US_ASCII))));
+
+      Assertions.assertEquals(String.join(".", "bankid", qrStartToken, Integer.toString(i), expectedAuthCode), input);
+    }
+
+    generator.setClock(CLOCK);
+    final String data = generator.generateAnimatedQRCodeData(qrStartToken, secrets[0], CLOCK.instant());
+    Assertions.assertEquals(generator.buildAnimatedInput(qrStartToken, secrets[0], 0), data);
+  }
+
   @Test
   public void testGenerateEmbedded() throws Exception {
     final QRGenerator generator = new ZxingQRGenerator();
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.rpapi.types;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases for {@link CompletionData}.
+ *
+ * @author Martin Lindström
+ */
+public class CompletionDataTest {
+
+  @Test
+  public void testBytesAndToString() {
+    final byte[] signature = "<?xml version=\"1.0\"?><signature>...</signature>".repeat(100)
+        .getBytes(StandardCharsets.UTF_8);
+    final String encodedSignature = Base64.getEncoder().encodeToString(signature);
+
+    final CompletionData data = new CompletionData();
+    data.setSignature(encodedSignature);
+    final CompletionData.StepUp stepUp = new CompletionData.StepUp();
+    stepUp.setMrtd(true);
+    data.setStepUp(stepUp);
+
+    Assertions.assertArrayEquals(signature, data.getSignatureBytes());
+    Assertions.assertNull(data.getOcspResponseBytes());
+
+    final String s = data.toString();
+    Assertions.assertFalse(s.contains(encodedSignature));
+    Assertions.assertTrue(s.contains("(%d chars)".formatted(encodedSignature.length())));
+    Assertions.assertTrue(s.contains("mrtd=true"));
+  }
+
+}
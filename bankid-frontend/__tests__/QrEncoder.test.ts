@@ -0,0 +1,240 @@
+import { expect, test } from 'vitest';
+import { encodeQr, qrImage } from '../src/QrEncoder';
+
+/*
+ * Reference matrices produced by an independent implementation of ISO/IEC 18004 (byte mode, level L). Dark modules
+ * are written as '#' and light modules as '.'.
+ */
+const testArguments = [
+  {
+    name: 'version 1',
+    text: 'hello',
+    matrix: [
+      '#######..#.##.#######',
+      '#.....#.##.#..#.....#',
+      '#.###.#.##..#.#.###.#',
+      '#.###.#..#.#..#.###.#',
+      '#.###.#.#...#.#.###.#',
+      '#.....#.#..##.#.....#',
+      '#######.#.#.#.#######',
+      '........#####........',
+      '##.#..##.##...###.##.',
+      '.#####.###....#....##',
+      '..##.####.#.##...##.#',
+      '...#.#..#..#.....#.##',
+      '....#.##.##.#.#.#....',
+      '........####...##.#.#',
+      '#######.###..#.#.###.',
+      '#.....#..#####.##....',
+      '#.###.#..#.#..###...#',
+      '#.###.#.#.##...#.####',
+      '#.###.#..##.#...#.#.#',
+      '#.....#.###..##......',
+      '#######.#.###..#.#.#.',
+    ],
+  },
+  {
+    name: 'version 4 (auto start link)',
+    text: 'bankid:///?autostarttoken=46f6aa68-a520-49d8-9be7-f0726d038c26',
+    matrix: [
+      '#######..#......##.#.####.#######',
+      '#.....#.##.###.#..#...#.#.#.....#',
+      '#.###.#..###..##..#.##....#.###.#',
+      '#.###.#.##.#.#..###...#...#.###.#',
+      '#.###.#...#.#.#..#####.##.#.###.#',
+      '#.....#.#.#..#.##...#.#...#.....#',
+      '#######.#.#.#.#.#.#.#.#.#.#######',
+      '............#........#...........',
+      '#####.#####.##.######..#.#.#.#.#.',
+      '.#..##.#.#....#..#.#.######.....#',
+      '##..######.#####..#...#.#...####.',
+      '##..##...###...#....##.#.##.#####',
+      '..##..####.#...###..#.####.##...#',
+      '##.###.#..#.##....##.#.#.##..##.#',
+      '##.##.###....###.##.##...#.#..##.',
+      '.#.##...##..##.##.#.###.......#.#',
+      '#####.#.#.#.#.##.#.#..#.##..##.##',
+      '##.###...#......#.##.#.#..#.....#',
+      '#..#..##.#.##..#.....#.........#.',
+      '#..###.#.###..#.#....#####....##.',
+      '.#...###..##...####.#..###..#....',
+      '#.###..##...###....#.###.##..#..#',
+      '#...###..##..###.#....#......#.#.',
+      '#.#......##.##.....#.#.#..##..#.#',
+      '#..#.###..#.#.#####.#..######....',
+      '........#........###..#.#...##..#',
+      '#######.#.###..##...##.##.#.##.#.',
+      '#.....#..###..#.#...##.##...#.#.#',
+      '#.###.#.##.#...###..#...#####..##',
+      '#.###.#.##..###...##....##.###.##',
+      '#.###.#.#....###.#..#######..#...',
+      '#.....#.#...##.#..#..###.#..#.#..',
+      '#######.#.#.#.#####...###...##.#.',
+    ],
+  },
+  {
+    name: 'version 6 (animated QR data)',
+    text: 'bankid.67df3917-fa0d-44e5-b327-edcc928297f8.0.dc69358e712458a66a7525beef148ae8526b1c71610eff2c16cdffb4cdac9bf8',
+    matrix: [
+      '#######..#.#..#....#.####.#....#..#######',
+      '#.....#.###....#..#.#...#####.#.#.#.....#',
+      '#.###.#..#.#..###..#.##.#.........#.###.#',
+      '#.###.#.#####..#..#....########.#.#.###.#',
+      '#.###.#..##...###...####.......#..#.###.#',
+      '#.....#.#.#...#..#.#.....#.##.#.#.#.....#',
+      '#######.#.#.#.#.#.#.#.#.#.#.#.#.#.#######',
+      '.........##.#.#.#.####..#..#..###........',
+      '#####.####...#..####.....#.###...#.#.#.#.',
+      '.#####.##.#..##..#.##.###.#...###########',
+      '#.#.#.#.#...####.#...#..##.#.#...##.#.#..',
+      '.##.##..#....#...##.#####.#...####.###...',
+      '..###.#....#..###...#.#.#######.##.#..#..',
+      '######.####.##.#.##....#.......#..#.##.##',
+      '.#....##.##....##.#.##..#####...#..###...',
+      '..#.....###.#..#.....##...#...##.#####...',
+      '.#.##.##.##..######......#.#.##..#....##.',
+      '.###.#.##.###......######...#.###.###.###',
+      '###...#........##.#.......###.#.#..#.##..',
+      '#.###..##.#...##...###..#..##...#..###.##',
+      '#..#.##.###.#..#..##..#####..###.#....##.',
+      '##..#...#.#...###...##.#.#..##.##.####.##',
+      '##.#######.##....###..#...##....##.##.#..',
+      '##.#...#.#.#..#.#..######.#.......#.#..##',
+      '..#..##..###.#..####..#..###.##..#.#.###.',
+      '##.#.#.....####..#.#.#.##......#..#.#.###',
+      '#.##.####.#..#####....#..####.#.##...#...',
+      '#.#.##..#..#.#..###..#.##..##.########...',
+      '###.#.#..#....###...#...######..##....#..',
+      '#.#..#.####.#..#..#..###......##..###..##',
+      '#.....####...####...#.#.#.##.....##.##...',
+      '#.#..#.#.#..#..#.....#....#.#.##.......##',
+      '#.#.###.#....#.####.#...#######.#######.#',
+      '........#.###.#....#..##.......##...##..#',
+      '#######.###....##.#..#...####..##.#.#..#.',
+      '#.....#..##.#.###..###.##..##...#...#..##',
+      '#.###.#.#.#.#..#..##.#...###.#..#####.##.',
+      '#.###.#.##....####..#..##...#.##.#.#.#.##',
+      '#.###.#.#..####...##.#..#.##......#.#....',
+      '#.....#.#..#....#.####.##...#.#.#......#.',
+      '#######.#######..#.#....####.#.#.###.##..',
+    ],
+  },
+  {
+    name: 'version 7 (version information)',
+    text: 'x'.repeat(150),
+    matrix: [
+      '#######...#..#.###.##..#.##.###.#...#.#######',
+      '#.....#..#...###.###.#....###.####.#..#.....#',
+      '#.###.#.##..#.#...#..##.#..#...#...#..#.###.#',
+      '#.###.#..###....#...#.####...#.....##.#.###.#',
+      '#.###.#..##.##.###.########.###.#####.#.###.#',
+      '#.....#..###.###.####...#.###.###.....#.....#',
+      '#######.#.#.#.#.#.#.#.#.#.#.#.#.#.#.#.#######',
+      '........#.##.#.###.##...###.###.#####........',
+      '###.#######..###.##.#####.###.###.##.##...#..',
+      '...#...#.#.##.#...#####.#..#...#.......#.##.#',
+      '##.##.####..#...#..#..####...#...#..##....###',
+      '##.#....#....#.###.....#.##.###.#######.#..#.',
+      '.#..####...#####.##.##....###.###.##..####...',
+      '#.###...####..#...#####.#..#...#.......#.##.#',
+      '##....##..#.#...#..#..####...#...#..##....###',
+      '.#.###..###.##.###.....#.##.###.#######.#..#.',
+      '..#.###.#.#..###.##.##....###.###.##..####...',
+      '.#........##..#...#####.#..#...#.......#.##.#',
+      '.##.#.#....#....#..#..####...#...#..##....###',
+      '#..##..#.#.#.#.###.....#.##.###.#######.#..#.',
+      '##.########.####.##.#####.###.###.########...',
+      '##..#...####..#...###...#..#...#....#...###.#',
+      '#.#.#.#.#.##....#...#.#.##...#...#.##.#.#.###',
+      '###.#...######.###..#...###.###.#####...#..#.',
+      '#...######.#####.########.###.###.#.######...',
+      '#...##.....#..#...#.#.###..#...#...#.#...##.#',
+      '....#.###..##...#...#..#.#...#...#.#.##.#.###',
+      '..#.##.##..#.#.###.#.#...##.###.###.#.###..#.',
+      '..##.###.#.#.###.###.##.#.###.###.#.#..#.#...',
+      '..#..#..##....#...#.#.###..#...#...#.#...##.#',
+      '###.#.#.###.#...#...#..#.#...#...#.#.##.#.###',
+      '#..###..##.###.###.#.#...##.###.###.#.###..#.',
+      '.#...###.#..#.##.###.##.#.###.###.#.#..#.#...',
+      '#..###....#.##....#.#.###..#...#...#.#...##.#',
+      '....#.#..##.....#...#..#.#...#...#.#.##.#.###',
+      '.####...#...##.###.#.#...##.###.###.#.###..##',
+      '#..##.#.#..#.###.########.###.###.#.######.##',
+      '........#.#...#...#.#...#..#...#...##...###.#',
+      '#######.###.##..#..##.#.##...#...#..#.#.#.###',
+      '#.....#.#.########..#...###.###.#####...#..#.',
+      '#.###.#.#..###.#.##.#####.###.###.########...',
+      '#.###.#..#.#.#....##...#...#...#....###.###..',
+      '#.###.#.#..##...#....#...#...#...#.##.###.#..',
+      '#.....#.#..#.#.###..###.###.###.####...#...#.',
+      '#######.#.##.###.####.###.###.###.#..#...#.##',
+    ],
+  },
+];
+
+/* Format information (level L) for masks 0-7 according to ISO/IEC 18004, table C.1. */
+const FORMAT_BITS_L = [
+  '111011111000100',
+  '111001011110011',
+  '111110110101010',
+  '111100010011101',
+  '110011000101111',
+  '110001100011000',
+  '110110001000001',
+  '110100101110110',
+];
+
+const toRows = (matrix: boolean[][]): string[] => matrix.map((row) => row.map((m) => (m ? '#' : '.')).join(''));
+
+const bits = (matrix: boolean[][], positions: [number, number][]): string =>
+  positions.map(([x, y]) => (matrix[y][x] ? '1' : '0')).join('');
+
+test.each(testArguments)('Encode $name', (args) => {
+  expect(toRows(encodeQr(args.text))).toEqual(args.matrix);
+});
+
+test.each(testArguments)('Format information for $name', (args) => {
+  const matrix = encodeQr(args.text);
+  const size = matrix.length;
+  // The copy around the top left finder pattern, least significant bit first
+  const first: [number, number][] = [];
+  for (let i = 0; i <= 5; i++) first.push([8, i]);
+  first.push([8, 7], [8, 8], [7, 8]);
+  for (let i = 5; i >= 0; i--) first.push([i, 8]);
+  // The copy split between the top right and bottom left finder patterns
+  const second: [number, number][] = [];
+  for (let i = 0; i < 8; i++) second.push([size - 1 - i, 8]);
+  for (let i = 8; i < 15; i++) second.push([8, size - 15 + i]);
+
+  const format = bits(matrix, first.reverse());
+  expect(FORMAT_BITS_L).toContain(format);
+  expect(bits(matrix, second.reverse())).toEqual(format);
+  expect(matrix[size - 8][8]).toBe(true);
+});
+
+test('Version information for version 7', () => {
+  const matrix = encodeQr('x'.repeat(150));
+  const size = matrix.length;
+  expect(size).toBe(45);
+  const bottomLeft: [number, number][] = [];
+  const topRight: [number, number][] = [];
+  for (let i = 17; i >= 0; i--) {
+    bottomLeft.push([Math.floor(i / 3), size - 11 + (i % 3)]);
+    topRight.push([size - 11 + (i % 3), Math.floor(i / 3)]);
+  }
+  expect(bits(matrix, bottomLeft)).toEqual('000111110010010100');
+  expect(bits(matrix, topRight)).toEqual('000111110010010100');
+});
+
+test('Version is selected from the data length', () => {
+  expect(encodeQr('a'.repeat(17)).length).toBe(21);
+  expect(encodeQr('a'.repeat(18)).length).toBe(25);
+  expect(encodeQr('q'.repeat(271)).length).toBe(57);
+  expect(() => encodeQr('q'.repeat(272))).toThrowError('Data too long for QR code');
+});
+
+test('Image is an SVG data URI', () => {
+  const image = qrImage('hello', 180);
+  expect(image.startsWith('data:image/svg+xml;base64,')).toBe(true);
+  expect(atob(image.substring(image.indexOf(',') + 1))).toContain('width="180" height="180"');
+});
@@ -0,0 +1,413 @@
+/*
+ * A minimal QR code encoder used when QR codes are rendered in the browser (see bankid.ui.qr-code.client-rendering).
+ *
+ * Only what is needed for BankID QR data is supported: byte mode, error correction level L and versions 1-10
+ * (i.e., up to 271 bytes of data). The output is an SVG image (as a data URI) that is rendered in the same way
+ * as the images generated by the backend.
+ */
+
+/* Error correction codewords per block, and the blocks (count and data codewords), for level L and versions 1-10. */
+const EC_BLOCKS_L: { ecc: number; groups: [number, number][] }[] = [
+  { ecc: 7, groups: [[1, 19]] },
+  { ecc: 10, groups: [[1, 34]] },
+  { ecc: 15, groups: [[1, 55]] },
+  { ecc: 20, groups: [[1, 80]] },
+  { ecc: 26, groups: [[1, 108]] },
+  { ecc: 18, groups: [[2, 68]] },
+  { ecc: 20, groups: [[2, 78]] },
+  { ecc: 24, groups: [[2, 97]] },
+  { ecc: 30, groups: [[2, 116]] },
+  { ecc: 18, groups: [[2, 68], [2, 69]] },
+];
+
+/* Alignment pattern center positions for versions 1-10. */
+const ALIGNMENT_POSITIONS: number[][] = [
+  [],
+  [6, 18],
+  [6, 22],
+  [6, 26],
+  [6, 30],
+  [6, 34],
+  [6, 22, 38],
+  [6, 24, 42],
+  [6, 26, 46],
+  [6, 28, 50],
+];
+
+/* Format bits for error correction level L. */
+const EC_LEVEL_L_BITS = 1;
+
+/* Number of modules used as quiet zone (same as the backend). */
+const QUIET_ZONE = 4;
+
+type Matrix = boolean[][];
+
+const getBit = (value: number, i: number): boolean => ((value >>> i) & 1) !== 0;
+
+const dataCodewords = (version: number): number =>
+  EC_BLOCKS_L[version - 1].groups.reduce((sum, [count, data]) => sum + count * data, 0);
+
+/* GF(256) multiplication using the QR code polynomial (0x11D). */
+const gfMultiply = (x: number, y: number): number => {
+  let z = 0;
+  for (let i = 7; i >= 0; i--) {
+    z = (z << 1) ^ ((z >>> 7) * 0x11d);
+    z ^= ((y >>> i) & 1) * x;
+  }
+  return z;
+};
+
+const reedSolomonDivisor = (degree: number): number[] => {
+  const result: number[] = new Array(degree).fill(0);
+  result[degree - 1] = 1;
+  let root = 1;
+  for (let i = 0; i < degree; i++) {
+    for (let j = 0; j < result.length; j++) {
+      result[j] = gfMultiply(result[j], root);
+      if (j + 1 < result.length) {
+        result[j] ^= result[j + 1];
+      }
+    }
+    root = gfMultiply(root, 0x02);
+  }
+  return result;
+};
+
+const reedSolomonRemainder = (data: number[], divisor: number[]): number[] => {
+  const result: number[] = divisor.map(() => 0);
+  for (const b of data) {
+    const factor = b ^ (result.shift() as number);
+    result.push(0);
+    divisor.forEach((coefficient, i) => (result[i] ^= gfMultiply(coefficient, factor)));
+  }
+  return result;
+};
+
+/* Builds the data codewords (mode indicator, length, data, terminator and padding). */
+const buildDataCodewords = (data: Uint8Array, version: number): number[] => {
+  const bits: number[] = [];
+  const append = (value: number, length: number) => {
+    for (let i = length - 1; i >= 0; i--) {
+      bits.push((value >>> i) & 1);
+    }
+  };
+  const capacityBits = dataCodewords(version) * 8;
+
+  append(0x4, 4);
+  append(data.length, version < 10 ? 8 : 16);
+  data.forEach((b) => append(b, 8));
+  append(0, Math.min(4, capacityBits - bits.length));
+  append(0, (8 - (bits.length % 8)) % 8);
+  for (let pad = 0xec; bits.length < capacityBits; pad ^= 0xec ^ 0x11) {
+    append(pad, 8);
+  }
+
+  const codewords: number[] = [];
+  for (let i = 0; i < bits.length; i += 8) {
+    codewords.push(bits.slice(i, i + 8).reduce((value, bit) => (value << 1) | bit, 0));
+  }
+  return codewords;
+};
+
+/* Splits the data into blocks, adds error correction and interleaves the result. */
+const addErrorCorrection = (data: number[], version: number): number[] => {
+  const { ecc, groups } = EC_BLOCKS_L[version - 1];
+  const divisor = reedSolomonDivisor(ecc);
+  const dataBlocks: number[][] = [];
+  const eccBlocks: number[][] = [];
+
+  let offset = 0;
+  for (const [count, length] of groups) {
+    for (let i = 0; i < count; i++) {
+      const block = data.slice(offset, offset + length);
+      offset += length;
+      dataBlocks.push(block);
+      eccBlocks.push(reedSolomonRemainder(block, divisor));
+    }
+  }
+
+  const result: number[] = [];
+  const maxLength = Math.max(...dataBlocks.map((b) => b.length));
+  for (let i = 0; i < maxLength; i++) {
+    dataBlocks.filter((b) => i < b.length).forEach((b) => result.push(b[i]));
+  }
+  for (let i = 0; i < ecc; i++) {
+    eccBlocks.forEach((b) => result.push(b[i]));
+  }
+  return result;
+};
+
+class QrMatrix {
+  readonly size: number;
+  readonly modules: Matrix;
+  readonly isFunction: Matrix;
+
+  constructor(readonly version: number) {
+    this.size = version * 4 + 17;
+    this.modules = Array.from({ length: this.size }, () => new Array(this.size).fill(false));
+    this.isFunction = Array.from({ length: this.size }, () => new Array(this.size).fill(false));
+  }
+
+  setFunction(x: number, y: number, dark: boolean) {
+    this.modules[y][x] = dark;
+    this.isFunction[y][x] = true;
+  }
+
+  drawFunctionPatterns() {
+    for (let i = 0; i < this.size; i++) {
+      this.setFunction(6, i, i % 2 === 0);
+      this.setFunction(i, 6, i % 2 === 0);
+    }
+    this.drawFinder(3, 3);
+    this.drawFinder(this.size - 4, 3);
+    this.drawFinder(3, this.size - 4);
+
+    const positions = ALIGNMENT_POSITIONS[this.version - 1];
+    const last = positions.length - 1;
+    positions.forEach((x, i) =>
+      positions.forEach((y, j) => {
+        if (!((i === 0 && j === 0) || (i === 0 && j === last) || (i === last && j === 0))) {
+          this.drawAlignment(x, y);
+        }
+      }),
+    );
+
+    this.drawFormatBits(0);
+    this.drawVersion();
+  }
+
+  drawFinder(x: number, y: number) {
+    for (let dy = -4; dy <= 4; dy++) {
+      for (let dx = -4; dx <= 4; dx++) {
+        const distance = Math.max(Math.abs(dx), Math.abs(dy));
+        const xx = x + dx;
+        const yy = y + dy;
+        if (xx >= 0 && xx < this.size && yy >= 0 && yy < this.size) {
+          this.setFunction(xx, yy, distance !== 2 && distance !== 4);
+        }
+      }
+    }
+  }
+
+  drawAlignment(x: number, y: number) {
+    for (let dy = -2; dy <= 2; dy++) {
+      for (let dx = -2; dx <= 2; dx++) {
+        this.setFunction(x + dx, y + dy, Math.max(Math.abs(dx), Math.abs(dy)) !== 1);
+      }
+    }
+  }
+
+  drawFormatBits(mask: number) {
+    const data = (EC_LEVEL_L_BITS << 3) | mask;
+    let rem = data;
+    for (let i = 0; i < 10; i++) {
+      rem = (rem << 1) ^ ((rem >>> 9) * 0x537);
+    }
+    const bits = ((data << 10) | rem) ^ 0x5412;
+
+    for (let i = 0; i <= 5; i++) {
+      this.setFunction(8, i, getBit(bits, i));
+    }
+    this.setFunction(8, 7, getBit(bits, 6));
+    this.setFunction(8, 8, getBit(bits, 7));
+    this.setFunction(7, 8, getBit(bits, 8));
+    for (let i = 9; i < 15; i++) {
+      this.setFunction(14 - i, 8, getBit(bits, i));
+    }
+    for (let i = 0; i < 8; i++) {
+      this.setFunction(this.size - 1 - i, 8, getBit(bits, i));
+    }
+    for (let i = 8; i < 15; i++) {
+      this.setFunction(8, this.size - 15 + i, getBit(bits, i));
+    }
+    this.setFunction(8, this.size - 8, true);
+  }
+
+  drawVersion() {
+    if (this.version < 7) {
+      return;
+    }
+    let rem = this.version;
+    for (let i = 0; i < 12; i++) {
+      rem = (rem << 1) ^ ((rem >>> 11) * 0x1f25);
+    }
+    const bits = (this.version << 12) | rem;
+    for (let i = 0; i < 18; i++) {
+      const bit = getBit(bits, i);
+      const a = this.size - 11 + (i % 3);
+      const b = Math.floor(i / 3);
+      this.setFunction(a, b, bit);
+      this.setFunction(b, a, bit);
+    }
+  }
+
+  drawCodewords(codewords: number[]) {
+    let i = 0;
+    for (let right = this.size - 1; right >= 1; right -= 2) {
+      if (right === 6) {
+        right = 5;
+      }
+      for (let vertical = 0; vertical < this.size; vertical++) {
+        for (let j = 0; j < 2; j++) {
+          const x = right - j;
+          const upward = ((right + 1) & 2) === 0;
+          const y = upward ? this.size - 1 - vertical : vertical;
+          if (!this.isFunction[y][x] && i < codewords.length * 8) {
+            this.modules[y][x] = getBit(codewords[i >>> 3], 7 - (i & 7));
+            i++;
+          }
+        }
+      }
+    }
+  }
+
+  applyMask(mask: number) {
+    for (let y = 0; y < this.size; y++) {
+      for (let x = 0; x < this.size; x++) {
+        if (!this.isFunction[y][x] && maskCondition(mask, x, y)) {
+          this.modules[y][x] = !this.modules[y][x];
+        }
+      }
+    }
+  }
+
+  penalty(): number {
+    let result = 0;
+    const lines: boolean[][] = [...this.modules, ...this.modules.map((_, x) => this.modules.map((row) => row[x]))];
+
+    for (const line of lines) {
+      // Rule 1: Runs of five or more modules of the same color
+      let run = 1;
+      for (let i = 1; i <= line.length; i++) {
+        if (i < line.length && line[i] === line[i - 1]) {
+          run++;
+        } else {
+          if (run >= 5) {
+            result += 3 + (run - 5);
+          }
+          run = 1;
+        }
+      }
+      // Rule 3: Patterns looking like finder patterns
+      for (let i = 0; i + 11 <= line.length; i++) {
+        const segment = line.slice(i, i + 11).map((m) => (m ? '1' : '0')).join('');
+        if (segment === '10111010000' || segment === '00001011101') {
+          result += 40;
+        }
+      }
+    }
+
+    // Rule 2: 2x2 blocks of the same color
+    let dark = 0;
+    for (let y = 0; y < this.size; y++) {
+      for (let x = 0; x < this.size; x++) {
+        const color = this.modules[y][x];
+        if (color) {
+          dark++;
+        }
+        if (
+          x < this.size - 1 &&
+          y < this.size - 1 &&
+          color === this.modules[y][x + 1] &&
+          color === this.modules[y + 1][x] &&
+          color === this.modules[y + 1][x + 1]
+        ) {
+          result += 3;
+        }
+      }
+    }
+
+    // Rule 4: Balance of dark and light modules
+    const percent = (dark * 100) / (this.size * this.size);
+    result += Math.floor(Math.abs(percent - 50) / 5) * 10;
+
+    return result;
+  }
+}
+
+const maskCondition = (mask: number, x: number, y: number): boolean => {
+  switch (mask) {
+    case 0:
+      return (x + y) % 2 === 0;
+    case 1:
+      return y % 2 === 0;
+    case 2:
+      return x % 3 === 0;
+    case 3:
+      return (x + y) % 3 === 0;
+    case 4:
+      return (Math.floor(x / 3) + Math.floor(y / 2)) % 2 === 0;
+    case 5:
+      return ((x * y) % 2) + ((x * y) % 3) === 0;
+    case 6:
+      return (((x * y) % 2) + ((x * y) % 3)) % 2 === 0;
+    default:
+      return (((x + y) % 2) + ((x * y) % 3)) % 2 === 0;
+  }
+};
+
+/**
+ * Encodes the supplied text into a QR code module matrix.
+ *
+ * @param text the text to encode
+ * @returns the module matrix (true for dark modules)
+ */
+export const encodeQr = (text: string): Matrix => {
+  const data = new TextEncoder().encode(text);
+  let version = 1;
+  while (4 + (version < 10 ? 8 : 16) + data.length * 8 > dataCodewords(version) * 8) {
+    if (++version > EC_BLOCKS_L.length) {
+      throw new Error('Data too long for QR code');
+    }
+  }
+  const codewords = addErrorCorrection(buildDataCodewords(data, version), version);
+
+  let best: QrMatrix | undefined;
+  let bestPenalty = Number.MAX_SAFE_INTEGER;
+  for (let mask = 0; mask < 8; mask++) {
+    const qr = new QrMatrix(version);
+    qr.drawFunctionPatterns();
+    qr.drawCodewords(codewords);
+    qr.applyMask(mask);
+    qr.drawFormatBits(mask);
+    const penalty = qr.penalty();
+    if (penalty < bestPenalty) {
+      best = qr;
+      bestPenalty = penalty;
+    }
+  }
+  return (best as QrMatrix).modules;
+};
+
+/**
+ * Renders the supplied text as a QR code and returns it as an SVG data URI (that may be used as the source of an
+ * image).
+ *
+ * @param text the text to encode
+ * @param size the width and height of the image
+ * @returns a data URI
+ */
+export const qrImage = (text: string, size: number): string => {
+  const modules = encodeQr(text);
+  const dimension = modules.length + 2 * QUIET_ZONE;
+  let path = '';
+  modules.forEach((row, y) => {
+    let x = 0;
+    while (x < row.length) {
+      if (!row[x]) {
+        x++;
+        continue;
+      }
+      const start = x;
+      while (x < row.length && row[x]) {
+        x++;
+      }
+      path += `M${start + QUIET_ZONE} ${y + QUIET_ZONE}h${x - start}v1h-${x - start}z`;
+    }
+  });
+  const svg =
+    `<svg xmlns="http://www.w3.org/2000/svg" viewBox="0 0 ${dimension} ${dimension}" width="${size}" ` +
+    `height="${size}" shape-rendering="crispEdges"><rect width="100%" height="100%" fill="#fff"/>` +
+    `<path fill="#000" d="${path}"/></svg>`;
+  return 'data:image/svg+xml;base64,' + btoa(svg);
+};
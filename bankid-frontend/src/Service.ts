@@ -1,6 +1,7 @@
 import type { Ref } from 'vue';
 import { getXSRFCookie } from '@/cookies';
 import { PATHS } from './Redirects';
+import { qrImage as renderQrImage } from './QrEncoder';
 import type {
   ApiResponse,
   ApiResponseStatus,
@@ -20,8 +21,8 @@ const requestOptions: RequestInit = {
   credentials: 'include',
 };
 
-export async function poll(showQr: boolean) {
-  const response = await fetch('./api/poll?qr=' + showQr, requestOptions);
+export async function poll(showQr: boolean, qrData: boolean = false) {
+  const response = await fetch('./api/poll?qr=' + showQr + '&qrData=' + qrData, requestOptions);
   const data = await response.json();
   if (!response.ok) {
     if (response.status === 429) {
@@ -54,16 +55,27 @@ export function isUserErrorResponse(obj: any): obj is UserErrorResponse {
   return obj && 'errorMessage' in obj;
 }
 
+/*
+ * If the QR code should be rendered by the frontend (clientQrSize is given), we ask the backend for the QR code data,
+ * and render the image ourselves.
+ */
 export const pollingQr = (
   qrImage: Ref<string>,
   messageCode: Ref<string>,
   responseStatus: Ref<ApiResponseStatus | undefined>,
   cancelRetry?: Ref<boolean>,
+  clientQrSize?: number,
 ) => {
-  const pollFunction = () => poll(true);
-  pollFunction().then((response) => {
-    handleResponse(response, pollFunction, qrImage, null, null, messageCode, responseStatus, cancelRetry);
-  });
+  const qrData = clientQrSize !== undefined;
+  const render = (response: ApiResponse) => {
+    if (qrData && response.qrData) {
+      response.qrCode = renderQrImage(response.qrData, clientQrSize as number);
+    }
+    return response;
+  };
+  const pollFunction = () => poll(true, qrData).then((r) => (isApiResponse(r) ? render(r) : r));
+  streamOrPoll('qr=true&qrData=' + qrData, render, pollFunction, qrImage, null, null, messageCode, responseStatus,
+    cancelRetry);
 };
 
 export const pollingAutoStart = (
@@ -74,9 +86,75 @@ export const pollingAutoStart = (
   cancelRetry?: Ref<boolean>,
 ) => {
   const pollFunction = () => poll(false);
-  pollFunction().then((response) => {
-    handleResponse(response, pollFunction, null, hideAutoStart, token, messageCode, responseStatus, cancelRetry);
+  streamOrPoll('qr=false', (r) => r, pollFunction, null, hideAutoStart, token, messageCode, responseStatus,
+    cancelRetry);
+};
+
+/*
+ * Receives status updates using the Server-Sent Events endpoint (/api/stream). If the browser does not support
+ * EventSource, or if the stream fails, we fall back to polling (/api/poll).
+ */
+const streamOrPoll = (
+  query: string,
+  transform: (response: ApiResponse) => ApiResponse,
+  pollFunction: () => Promise<ApiResponse | RetryResponse | SessionExpiredResponse | UserErrorResponse>,
+  qrImage: Ref<string> | null,
+  hideAutoStart: Ref<boolean> | null,
+  token: Ref<string> | null,
+  messageCode: Ref<string>,
+  responseStatus: Ref<ApiResponseStatus | undefined>,
+  cancelRetry?: Ref<boolean>,
+) => {
+  const startPolling = () => {
+    pollFunction().then((response) => {
+      handleResponse(response, pollFunction, qrImage, hideAutoStart, token, messageCode, responseStatus, cancelRetry);
+    });
+  };
+
+  if (typeof EventSource === 'undefined') {
+    startPolling();
+    return;
+  }
+
+  const source = new EventSource('./api/stream?' + query, { withCredentials: true });
+  let received = false;
+
+  source.onopen = () => {
+    received = false;
+  };
+  source.addEventListener('status', (event) => {
+    received = true;
+    if (cancelRetry?.value) {
+      source.close();
+      return;
+    }
+    const response = transform(JSON.parse((event as MessageEvent).data) as ApiResponse);
+    applyApiResponse(response, qrImage, hideAutoStart, token, messageCode, responseStatus);
+    if (response.status !== 'NOT_STARTED' && response.status !== 'IN_PROGRESS') {
+      source.close();
+    }
+  });
+  // Sent when only the QR code has changed (the status is unchanged) ...
+  source.addEventListener('qr', (event) => {
+    received = true;
+    if (qrImage && !cancelRetry?.value) {
+      const response = transform(JSON.parse((event as MessageEvent).data) as ApiResponse);
+      if (response.status === 'NOT_STARTED' && response.qrCode !== '') {
+        qrImage.value = response.qrCode;
+      }
+    }
   });
+  source.onerror = () => {
+    // The server completes the stream periodically, and the browser will then re-connect. But if the stream could not
+    // be established, or if it failed before delivering anything, we use polling instead (which also takes care of
+    // session expiration and other errors).
+    if (source.readyState === EventSource.CLOSED || !received) {
+      source.close();
+      if (!cancelRetry?.value) {
+        startPolling();
+      }
+    }
+  };
 };
 
 export function handleApiError(response: UserErrorResponse) {
@@ -88,6 +166,42 @@ export function handleApiError(response: UserErrorResponse) {
   }
 }
 
+const applyApiResponse = (
+  response: ApiResponse,
+  qrImage: Ref<string> | null,
+  hideAutoStart: Ref<boolean> | null,
+  token: Ref<string> | null,
+  messageCode: Ref<string>,
+  responseStatus: Ref<ApiResponseStatus | undefined>,
+) => {
+  responseStatus.value = response.status;
+
+  if (qrImage && response.qrCode !== '') {
+    qrImage.value = response.qrCode;
+  }
+
+  if (response.status !== 'NOT_STARTED') {
+    if (qrImage) {
+      qrImage.value = '';
+    }
+    if (hideAutoStart) {
+      hideAutoStart.value = true;
+    }
+  }
+
+  if (token) {
+    token.value = response.autoStartToken;
+  }
+
+  messageCode.value = response.messageCode;
+
+  if (response.status === 'COMPLETE') {
+    window.location.href = PATHS.COMPLETE;
+  } else if (response.status === 'CANCEL') {
+    window.location.href = PATHS.CANCEL;
+  }
+};
+
 const handleResponse = (
   response: ApiResponse | RetryResponse | SessionExpiredResponse | UserErrorResponse,
   pollFunction: () => Promise<ApiResponse | RetryResponse | SessionExpiredResponse | UserErrorResponse>,
@@ -107,32 +221,7 @@ const handleResponse = (
   }
 
   if (isApiResponse(response)) {
-    responseStatus.value = response.status;
-
-    if (qrImage && response.qrCode !== '') {
-      qrImage.value = response.qrCode;
-    }
-
-    if (response.status !== 'NOT_STARTED') {
-      if (qrImage) {
-        qrImage.value = '';
-      }
-      if (hideAutoStart) {
-        hideAutoStart.value = true;
-      }
-    }
-
-    if (token) {
-      token.value = response.autoStartToken;
-    }
-
-    messageCode.value = response.messageCode;
-
-    if (response.status === 'COMPLETE') {
-      window.location.href = PATHS.COMPLETE;
-    } else if (response.status === 'CANCEL') {
-      window.location.href = PATHS.CANCEL;
-    }
+    applyApiResponse(response, qrImage, hideAutoStart, token, messageCode, responseStatus);
   }
 
   if (!cancelRetry?.value) {
@@ -24,6 +24,7 @@ export interface ApiResponse {
   qrCode: string;
   autoStartToken: string;
   messageCode: string;
+  qrData?: string;
 }
 
 export interface RetryResponse {
@@ -65,6 +66,7 @@ export interface UiInformation {
   sp: SpInformation;
   displayQrHelp: boolean;
   qrSize: string;
+  clientQrRendering: boolean;
   accessibilityReportLink: string | null;
   providerName: LangObject;
   qrDisplayInMinutes: bigint;
@@ -62,4 +62,20 @@ public class ApiResponse {
 
   /** The code for the detailed message. */
   private String messageCode;
+
+  /** The QR code data, for frontends that render the QR code themselves. */
+  private String qrData;
+
+  /**
+   * Constructor for responses not carrying any QR code data.
+   *
+   * @param status the status
+   * @param qrCode the QR code image
+   * @param autoStartToken the autostart token
+   * @param messageCode the message code
+   */
+  public ApiResponse(
+      final Status status, final String qrCode, final String autoStartToken, final String messageCode) {
+    this(status, qrCode, autoStartToken, messageCode, "");
+  }
 }
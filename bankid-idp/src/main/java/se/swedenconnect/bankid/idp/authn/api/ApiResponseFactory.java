@@ -40,6 +40,20 @@ public class ApiResponseFactory {
    * @return an {@link ApiResponse}
    */
   public static ApiResponse create(final BankIdSessionData data, final QRGenerator generator, final boolean showQr) {
+    return create(data, generator, showQr, false);
+  }
+
+  /**
+   * Creates an {@link ApiResponse}.
+   *
+   * @param data      the BankID session data
+   * @param generator the QR code generator bean
+   * @param showQr    whether to display the QR code
+   * @param qrData    whether the QR code data should be delivered instead of a QR code image
+   * @return an {@link ApiResponse}
+   */
+  public static ApiResponse create(final BankIdSessionData data, final QRGenerator generator, final boolean showQr,
+      final boolean qrData) {
     if(Objects.nonNull(data.getErrorCode())) {
       if (data.getErrorCode().equals(ErrorCode.USER_CANCEL)) {
         return createUserCancelResponse();
@@ -47,13 +61,20 @@ public class ApiResponseFactory {
       return createUserErrorResponse(data);
     }
     String qrCode = "";
+    String qrCodeData = "";
     // Only generate qr code when it has not been scanned and should be displayed
     if (showQr && Optional.ofNullable(data.getStatus()).map(ProgressStatus.OUTSTANDING_TRANSACTION::equals)
         .orElse(false)) {
-      qrCode = generator.generateAnimatedQRCodeBase64Image(data.getQrStartToken(), data.getQrStartSecret(),
-          data.getStartTime());
+      if (qrData) {
+        qrCodeData = generator.generateAnimatedQRCodeData(data.getQrStartToken(), data.getQrStartSecret(),
+            data.getStartTime());
+      }
+      else {
+        qrCode = generator.generateAnimatedQRCodeBase64Image(data.getQrStartToken(), data.getQrStartSecret(),
+            data.getStartTime());
+      }
     }
-    return new ApiResponse(statusOf(data), qrCode, data.getAutoStartToken(), data.getMessageCode());
+    return new ApiResponse(statusOf(data), qrCode, data.getAutoStartToken(), data.getMessageCode(), qrCodeData);
   }
 
   private static ApiResponse createUserErrorResponse(BankIdSessionData data) {
@@ -16,11 +16,17 @@
 package se.swedenconnect.bankid.idp.authn.api;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.apache.commons.io.IOUtils;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -30,7 +36,9 @@ import org.springframework.web.bind.annotation.RestController;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import se.swedenconnect.bankid.idp.authn.BankIdAuthenticationProvider;
 import se.swedenconnect.bankid.idp.authn.UserVisibleDataFactory;
 import se.swedenconnect.bankid.idp.authn.annotations.ApiController;
@@ -45,6 +53,10 @@ import se.swedenconnect.bankid.idp.authn.service.BankIdService;
 import se.swedenconnect.bankid.idp.authn.service.PollRequest;
 import se.swedenconnect.bankid.idp.authn.session.BankIdSessionReader;
 import se.swedenconnect.bankid.idp.authn.session.BankIdSessionState;
+import se.swedenconnect.bankid.idp.authn.session.CachingSessionDao;
+import se.swedenconnect.bankid.idp.concurrency.LockingFilter;
+import se.swedenconnect.bankid.idp.concurrency.TryLock;
+import se.swedenconnect.bankid.idp.concurrency.TryLockRepository;
 import se.swedenconnect.bankid.idp.rp.RelyingPartyData;
 import se.swedenconnect.bankid.idp.rp.RelyingPartyRepository;
 import se.swedenconnect.bankid.rpapi.service.BankIDClient;
@@ -73,6 +85,22 @@ import se.swedenconnect.spring.saml.idp.error.UnrecoverableSaml2IdpException;
 @Slf4j
 public class BankIdApiController {
 
+  /** The interval (in milliseconds) between two status checks for the status stream. */
+  private static final long STREAM_INTERVAL_MILLIS = 1000;
+
+  /** The maximum duration (in seconds) for a status stream before the client has to re-connect. */
+  private static final long STREAM_MAX_DURATION_SECONDS = 25;
+
+  /** The name of the status stream event holding a changed status. */
+  static final String STATUS_EVENT = "status";
+
+  /** The name of the status stream event holding a changed QR code (for an unchanged status). */
+  static final String QR_EVENT = "qr";
+
+  /** The statuses after which no more status events will be streamed. */
+  private static final Set<ApiResponse.Status> FINAL_STATUSES =
+      EnumSet.of(ApiResponse.Status.COMPLETE, ApiResponse.Status.CANCEL, ApiResponse.Status.ERROR);
+
   /** Relying parties that we serve. */
   private final RelyingPartyRepository rpRepository;
 
@@ -97,6 +125,9 @@ public class BankIdApiController {
   /** Provides UI information to the frontend. */
   private final UiInformationProvider uiInformation;
 
+  /** The per-session locks (shared with the {@link LockingFilter}). */
+  private final TryLockRepository locks;
+
   /**
    * Gets information about the selected device.
    *
@@ -120,24 +151,27 @@ public class BankIdApiController {
    *
    * @param request the HTTP servlet request
    * @param qr whether to display the QR code
+   * @param qrData whether the QR code data should be delivered instead of a QR code image
    * @return an {@link ApiResponse}
    */
   @PostMapping("/api/poll")
   public Mono<ApiResponse> poll(final HttpServletRequest request,
-      @RequestParam(value = "qr", defaultValue = "false") final Boolean qr) {
+      @RequestParam(value = "qr", defaultValue = "false") final Boolean qr,
+      @RequestParam(value = "qrData", defaultValue = "false") final Boolean qrData) {
 
     final BankIdSessionState state = this.sessionReader.loadSessionData(request);
     final BankIdContext bankIdContext = this.getContext(request);
     final RelyingPartyData relyingParty = this.getRelyingParty(bankIdContext.getClientId());
     final BankIDClient client = relyingParty.getClient();
     if (state != null && state.getBankIdSessionData().getStatus() == ProgressStatus.COMPLETE) {
-      return Mono.just(ApiResponseFactory.create(state.getBankIdSessionData(), client.getQRGenerator(), qr));
+      return Mono.just(ApiResponseFactory.create(state.getBankIdSessionData(), client.getQRGenerator(), qr, qrData));
     }
     else {
       final PollRequest pollRequest = PollRequest.builder()
           .request(request)
           .relyingPartyData(relyingParty)
           .qr(qr)
+          .qrData(qrData)
           .context(bankIdContext)
           .data(this.getMessage(request, bankIdContext, relyingParty))
           .state(state)
@@ -150,6 +184,126 @@ public class BankIdApiController {
     }
   }
 
+  /**
+   * API method for streaming BankID status updates to the frontend using Server-Sent Events. This is an alternative to
+   * the frontend repeatedly invoking {@link #poll(HttpServletRequest, Boolean, Boolean)}.
+   * <p>
+   * The status is polled every {@value #STREAM_INTERVAL_MILLIS} milliseconds, and a {@code status} event is only sent
+   * if the status, autostart token or message code differs from the previously sent ones. If only the QR code has
+   * changed, which happens every second when QR codes are requested, a {@code qr} event holding the status and the QR
+   * code is sent instead. Each status check is made holding the same per-session lock as the polling endpoint (see
+   * {@link LockingFilter}). If the lock is held by a concurrent poll or stream for the same session, the status check
+   * is skipped. Each status check reads the session objects anew. The stream is completed when the operation reaches a
+   * final state (complete, cancel or error), or after {@value #STREAM_MAX_DURATION_SECONDS} seconds in which case the
+   * client is expected to re-connect.
+   * </p>
+   * <p>
+   * Errors that occur before the stream is started, for example if the session has expired, are reported in the same
+   * way as for the polling endpoint. If an error occurs during streaming the stream is terminated, and the frontend
+   * should fall back to polling.
+   * </p>
+   *
+   * @param request the HTTP servlet request
+   * @param qr whether to display the QR code
+   * @param qrData whether the QR code data should be delivered instead of a QR code image
+   * @return a stream of {@code status} and {@code qr} events
+   */
+  @GetMapping(value = "/api/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<ApiResponse>> stream(final HttpServletRequest request,
+      @RequestParam(value = "qr", defaultValue = "false") final Boolean qr,
+      @RequestParam(value = "qrData", defaultValue = "false") final Boolean qrData) {
+
+    // Make sure that we have a valid session before we start streaming ...
+    //
+    this.getRelyingParty(this.getContext(request).getClientId());
+    final TryLock lock = this.locks.get(LockingFilter.getLockKey(request.getSession()));
+
+    // The stream request lives on, so the session objects cached for the request must be re-read for each poll ...
+    //
+    final Supplier<Mono<ApiResponse>> poller = () -> {
+      CachingSessionDao.clearCache(request);
+      return this.poll(request, qr, qrData);
+    };
+    return statusStream(poller, lock,
+        Duration.ofMillis(STREAM_INTERVAL_MILLIS), Duration.ofSeconds(STREAM_MAX_DURATION_SECONDS))
+        .doOnError(e -> log.info("Status stream terminated due to error - {}", e.getMessage()));
+  }
+
+  /**
+   * Creates the stream of events used by {@link #stream(HttpServletRequest, Boolean, Boolean)}.
+   * <p>
+   * Every {@code interval} the supplied poller is invoked while holding {@code lock}. The poll is made, and the lock
+   * released, on the same (bounded elastic) thread. If the lock can not be acquired, no status check is made for that
+   * tick. A {@code status} event is only emitted if the status fields of the response (see
+   * {@link #isSameStatus(ApiResponse, ApiResponse)}) differ from the previous response, and a {@code qr} event is
+   * emitted if only the QR code differs. The stream completes after a final status or after {@code maxDuration}.
+   * </p>
+   *
+   * @param poller the poll operation
+   * @param lock the per-session polling lock
+   * @param interval the interval between two status checks
+   * @param maxDuration the maximum duration of the stream
+   * @return a stream of {@code status} and {@code qr} events
+   */
+  static Flux<ServerSentEvent<ApiResponse>> statusStream(final Supplier<Mono<ApiResponse>> poller, final TryLock lock,
+      final Duration interval, final Duration maxDuration) {
+    return Flux.defer(() -> {
+      final AtomicReference<ApiResponse> previous = new AtomicReference<>();
+      return Flux.interval(Duration.ZERO, interval, Schedulers.boundedElastic())
+          .onBackpressureDrop()
+          .concatMap(tick -> Mono.fromCallable(() -> {
+            if (!lock.tryLock()) {
+              log.debug("Session is busy, skipping status check for status stream");
+              return null;
+            }
+            try {
+              return poller.get().block();
+            }
+            finally {
+              lock.unlock();
+            }
+          }))
+          .takeUntil(r -> FINAL_STATUSES.contains(r.getStatus()))
+          .take(maxDuration)
+          .mapNotNull(r -> toEvent(previous.getAndSet(r), r, interval));
+    });
+  }
+
+  /**
+   * Creates the event for a response given the previous response.
+   *
+   * @param previous the previous response (may be {@code null})
+   * @param response the response
+   * @param retry the reconnection time for the client
+   * @return a {@code status} or {@code qr} event, or {@code null} if nothing has changed
+   */
+  private static ServerSentEvent<ApiResponse> toEvent(
+      final ApiResponse previous, final ApiResponse response, final Duration retry) {
+    if (previous == null || !isSameStatus(previous, response)) {
+      return ServerSentEvent.builder(response).event(STATUS_EVENT).retry(retry).build();
+    }
+    if (!Objects.equals(previous.getQrCode(), response.getQrCode())
+        || !Objects.equals(previous.getQrData(), response.getQrData())) {
+      final ApiResponse qr = new ApiResponse(response.getStatus(), response.getQrCode(), "", "", response.getQrData());
+      return ServerSentEvent.builder(qr).event(QR_EVENT).retry(retry).build();
+    }
+    return null;
+  }
+
+  /**
+   * Tells whether two responses have the same status, autostart token and message code, i.e., whether they only
+   * differ in their QR codes (which change every second).
+   *
+   * @param r1 the first response
+   * @param r2 the second response
+   * @return {@code true} if the status fields are equal and {@code false} otherwise
+   */
+  static boolean isSameStatus(final ApiResponse r1, final ApiResponse r2) {
+    return r1.getStatus() == r2.getStatus()
+        && Objects.equals(r1.getAutoStartToken(), r2.getAutoStartToken())
+        && Objects.equals(r1.getMessageCode(), r2.getMessageCode());
+  }
+
   /**
    * Gets the {@link FrontendOverrideResponse} telling the front-end about customizations.
    *
@@ -236,13 +390,20 @@ public class BankIdApiController {
   }
 
   /**
-   * API method for delivering status information.
+   * API method for delivering status information. If the call is made within an authentication, the status for the
+   * relying party of the authentication is reported.
    *
+   * @param request the HTTP servlet request
    * @return the service information
    */
   @GetMapping(value = "/api/status")
-  public Mono<ServiceInformation> serviceInformation() {
-    return this.service.getServiceInformation();
+  public Mono<ServiceInformation> serviceInformation(final HttpServletRequest request) {
+    final RelyingPartyData relyingParty =
+        Optional.ofNullable(this.provider.getTokenRepository().getExternalAuthenticationToken(request))
+            .map(RedirectForAuthenticationToken::getAuthnInputToken)
+            .map(t -> this.rpRepository.getRelyingParty(t.getAuthnRequestToken().getEntityId()))
+            .orElse(null);
+    return this.service.getServiceInformation(relyingParty);
   }
 
   /**
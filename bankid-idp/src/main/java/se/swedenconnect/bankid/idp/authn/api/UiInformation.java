@@ -53,6 +53,13 @@ public class UiInformation {
   @Builder.Default
   private int qrSize = 200;
 
+  /**
+   * Tells whether the frontend should render the QR code itself (based on QR code data delivered by the backend)
+   * instead of displaying QR code images generated by the backend.
+   */
+  @Builder.Default
+  private boolean clientQrRendering = false;
+
   /**
    * Swedish public e-services are required to include a link to the "accessibility report" (tillgänglighetsrapport) of
    * their web site. If this property is assigned, the UI will display this link at the bottom of the page.
@@ -68,6 +68,7 @@ public class UiInformationProvider {
         .qrDisplayInMinutes(startRetryDuration)
         .sp(this.getSpInformation(uiInfo, relyingParty))
         .displayQrHelp(this.uiProperties.getQrCode().isDisplayQrHelp())
+        .clientQrRendering(this.uiProperties.getQrCode().isClientRendering())
         .accessibilityReportLink(this.uiProperties.getAccessibilityReportLink())
         .providerName(Optional.ofNullable(this.uiProperties.getProvider())
             .map(UiProperties.ApplicationProviderProperties::getName)
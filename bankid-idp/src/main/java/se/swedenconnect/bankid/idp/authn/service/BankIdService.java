@@ -19,6 +19,10 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.reactivestreams.Publisher;
 
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
@@ -33,6 +37,7 @@ import se.swedenconnect.bankid.idp.authn.events.BankIdEventPublisher;
 import se.swedenconnect.bankid.idp.authn.session.BankIdSessionData;
 import se.swedenconnect.bankid.idp.authn.session.BankIdSessionState;
 import se.swedenconnect.bankid.idp.rp.RelyingPartyData;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdTimeoutException;
 import se.swedenconnect.bankid.rpapi.types.BankIDException;
 import se.swedenconnect.bankid.rpapi.types.CollectResponse;
 import se.swedenconnect.bankid.rpapi.types.ErrorCode;
@@ -58,6 +63,18 @@ public class BankIdService {
   /** Duration to allow retry session start */
   private final Duration bankIdStartRetryDuration;
 
+  /** Optional server side collect scheduler. */
+  private CollectScheduler collectScheduler;
+
+  /** Optional coalescer for concurrent collect calls for the same order. */
+  private CollectCoalescer collectCoalescer;
+
+  /** Optional per relying party circuit breakers and bulkheads. */
+  private RelyingPartyResilience relyingPartyResilience;
+
+  /** Optional rate limiters and retries per BankID operation. */
+  private OperationResilience operationResilience;
+
   /**
    * Constructor.
    *
@@ -87,7 +104,7 @@ public class BankIdService {
             .map(c -> BankIdSessionData.of(sessionData, c, request.getQr()))
             .flatMap(b -> this.reInitIfExpired(request, b))
             .map(b -> ApiResponseFactory.create(b, request.getRelyingPartyData().getClient().getQRGenerator(),
-                request.getQr()))
+                request.getQr(), Boolean.TRUE.equals(request.getQrData())))
             .onErrorResume(e -> this.handleError(e, request)))
         .orElseGet(() -> this.onNoSession(request));
   }
@@ -104,9 +121,15 @@ public class BankIdService {
       final HttpServletRequest request, final BankIdSessionState state, final RelyingPartyData data) {
 
     this.eventPublisher.orderCancellation(request, data).publish();
+    if (this.collectScheduler != null) {
+      this.collectScheduler.remove(state.getBankIdSessionData().getOrderReference());
+    }
+    if (this.collectCoalescer != null) {
+      this.collectCoalescer.remove(state.getBankIdSessionData().getOrderReference());
+    }
     return data.getClient()
         .cancel(state.getBankIdSessionData().getOrderReference())
-        .transformDeferred(CircuitBreakerOperator.of(this.circuitBreaker));
+        .transformDeferred(this.resilience(data, OperationResilience.Operation.CANCEL));
   }
 
   /**
@@ -119,7 +142,7 @@ public class BankIdService {
     if (request.getContext().getOperation().equals(BankIdOperation.SIGN)) {
       return request.getRelyingPartyData().getClient()
           .sign(this.requestFactory.createSignRequest(request))
-          .transformDeferred(CircuitBreakerOperator.of(this.circuitBreaker))
+          .transformDeferred(this.resilience(request.getRelyingPartyData(), OperationResilience.Operation.SIGN))
           .map(o -> {
             this.eventPublisher.orderResponse(request, o).publish();
             return o;
@@ -128,7 +151,7 @@ public class BankIdService {
     else {
       return request.getRelyingPartyData().getClient()
           .authenticate(this.requestFactory.createAuthenticateRequest(request))
-          .transformDeferred(CircuitBreakerOperator.of(this.circuitBreaker))
+          .transformDeferred(this.resilience(request.getRelyingPartyData(), OperationResilience.Operation.AUTH))
           .map(o -> {
             this.eventPublisher.orderResponse(request, o).publish();
             return o;
@@ -151,7 +174,8 @@ public class BankIdService {
             .map(collectResponse -> {
               eventPublisher.collectResponse(pollRequest, collectResponse).publish();
               return ApiResponseFactory.create(BankIdSessionData.of(sessionData, collectResponse, pollRequest.getQr()),
-                  pollRequest.getRelyingPartyData().getClient().getQRGenerator(), pollRequest.getQr());
+                  pollRequest.getRelyingPartyData().getClient().getQRGenerator(), pollRequest.getQr(),
+                  Boolean.TRUE.equals(pollRequest.getQrData()));
             }));
   }
 
@@ -169,6 +193,11 @@ public class BankIdService {
           .publish();
       return this.sessionExpired(bankIdSessionExpiredException.getRequest().getRequest(), request);
     }
+    if (e instanceof final BankIdTimeoutException bankIdTimeoutException) {
+      this.eventPublisher.bankIdErrorEvent(request.getRequest(), request.getRelyingPartyData(),
+          bankIdTimeoutException.getErrorCode(), bankIdTimeoutException.getMessage()).publish();
+      return Mono.error(e);
+    }
     if (e.getCause() instanceof final BankIDException bankIdException) {
       if (ErrorCode.USER_CANCEL == bankIdException.getErrorCode()) {
         this.eventPublisher.orderCancellation(request.getRequest(), request.getRelyingPartyData()).publish();
@@ -224,15 +253,42 @@ public class BankIdService {
    * @return a {@link CollectResponse}
    */
   private Mono<CollectResponse> collect(final PollRequest request) {
-    return request.getRelyingPartyData().getClient()
-        .collect(request.getState().getBankIdSessionData().getOrderReference())
-        .transformDeferred(CircuitBreakerOperator.of(this.circuitBreaker))
+    final String orderReference = request.getState().getBankIdSessionData().getOrderReference();
+    final Supplier<Mono<CollectResponse>> collector = () -> request.getRelyingPartyData().getClient()
+        .collect(orderReference)
+        .map(CollectResponse.class::cast)
+        .transformDeferred(this.resilience(request.getRelyingPartyData(), OperationResilience.Operation.COLLECT));
+
+    return Optional.ofNullable(this.collectScheduler)
+        .map(s -> s.collect(orderReference, collector))
+        .or(() -> Optional.ofNullable(this.collectCoalescer).map(c -> c.collect(orderReference, collector)))
+        .orElseGet(collector)
         .map(c -> {
           this.eventPublisher.collectResponse(request, c).publish();
           return c;
         });
   }
 
+  /**
+   * Gets the operator that applies the resilience (circuit breaker and possibly bulkhead, rate limiter and retry) to a
+   * call to the BankID server for the given relying party.
+   *
+   * @param relyingParty the relying party
+   * @param operation the BankID operation
+   * @return an operator
+   */
+  private <T> UnaryOperator<Publisher<T>> resilience(
+      final RelyingPartyData relyingParty, final OperationResilience.Operation operation) {
+    final UnaryOperator<Publisher<T>> circuitBreakerOperator = this.relyingPartyResilience != null
+        ? this.relyingPartyResilience.operator(relyingParty.getId())
+        : CircuitBreakerOperator.of(this.circuitBreaker);
+    if (this.operationResilience == null) {
+      return circuitBreakerOperator;
+    }
+    final UnaryOperator<Publisher<T>> operationOperator = this.operationResilience.operator(operation);
+    return p -> operationOperator.apply(circuitBreakerOperator.apply(p));
+  }
+
   /**
    * Is invoked if the session has expired.
    *
@@ -245,13 +301,73 @@ public class BankIdService {
     return Mono.just(ApiResponseFactory.createErrorResponseTimeExpired());
   }
 
+  /**
+   * Assigns a {@link CollectScheduler} that decouples the BankID collect calls from the polling requests. If not
+   * assigned, each poll results in a collect call.
+   *
+   * @param collectScheduler the collect scheduler
+   */
+  public void setCollectScheduler(final CollectScheduler collectScheduler) {
+    this.collectScheduler = collectScheduler;
+  }
+
+  /**
+   * Assigns a {@link CollectCoalescer} that makes concurrent collect calls for the same order share one call to the
+   * BankID server. Not used if a {@link CollectScheduler} has been assigned.
+   *
+   * @param collectCoalescer the collect coalescer
+   */
+  public void setCollectCoalescer(final CollectCoalescer collectCoalescer) {
+    this.collectCoalescer = collectCoalescer;
+  }
+
+  /**
+   * Assigns a {@link RelyingPartyResilience} that gives each relying party a circuit breaker and a bulkhead of its
+   * own. If not assigned, the circuit breaker supplied in the constructor is used for all relying parties.
+   *
+   * @param relyingPartyResilience the relying party resilience support
+   */
+  public void setRelyingPartyResilience(final RelyingPartyResilience relyingPartyResilience) {
+    this.relyingPartyResilience = relyingPartyResilience;
+  }
+
+  /**
+   * Assigns an {@link OperationResilience} that applies rate limiters and retries for the BankID operations.
+   *
+   * @param operationResilience the operation resilience support
+   */
+  public void setOperationResilience(final OperationResilience operationResilience) {
+    this.operationResilience = operationResilience;
+  }
+
   /**
    * Delivers service information.
    *
    * @return a {@link ServiceInformation}
    */
   public Mono<ServiceInformation> getServiceInformation() {
-    if (this.circuitBreaker.getState().equals(CircuitBreaker.State.CLOSED)) {
+    return this.getServiceInformation(null);
+  }
+
+  /**
+   * Delivers service information for the given relying party. If relying party circuit breakers are used, the status
+   * for the given relying party is reported. If the relying party is not known, {@link ServiceInformation.Status#OK}
+   * is only reported if the circuits for all relying parties are closed.
+   *
+   * @param relyingParty the relying party (may be {@code null})
+   * @return a {@link ServiceInformation}
+   */
+  public Mono<ServiceInformation> getServiceInformation(final RelyingPartyData relyingParty) {
+    final boolean available;
+    if (this.relyingPartyResilience != null) {
+      available = relyingParty != null
+          ? this.relyingPartyResilience.isAvailable(relyingParty.getId())
+          : this.relyingPartyResilience.isAvailable();
+    }
+    else {
+      available = this.circuitBreaker.getState().equals(CircuitBreaker.State.CLOSED);
+    }
+    if (available) {
       return Mono.just(new ServiceInformation(ServiceInformation.Status.OK));
     }
     else {
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+
+/**
+ * Makes sure that concurrent collect calls for the same order are coalesced into one call to the BankID server.
+ * <p>
+ * If a collect call for an order is in progress, further collects for the same order share the result of the ongoing
+ * call. This handles the case when a user has the IdP open in several tabs, or when the frontend retries, without
+ * making extra calls to BankID. Optionally, a successful result may also be reused for {@code reuseWindow} after it was
+ * received (by default, only ongoing calls are shared).
+ * </p>
+ * <p>
+ * Errors are only shared with callers that were waiting for the failing call, i.e., the next collect after an error
+ * results in a new call.
+ * </p>
+ * <p>
+ * If a {@link CollectPacingPolicy} is assigned, a result is reused for the minimum interval given by the policy (if
+ * longer than the reuse window), and errors are reused during the back-off given by the policy.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class CollectCoalescer {
+
+  /** The default duration during which a collect result is reused, i.e., only ongoing calls are shared. */
+  public static final Duration DEFAULT_REUSE_WINDOW = Duration.ZERO;
+
+  /**
+   * If a pacing policy is used, the latest response for a pending order is kept this long after it expired, so that the
+   * policy can compare it with the next response.
+   */
+  private static final Duration PACING_RETENTION = Duration.ofSeconds(30);
+
+  /** Ongoing, and recently completed, collect calls indexed by the order reference. */
+  private final Map<String, SharedCollect> collects = new ConcurrentHashMap<>();
+
+  /** The duration during which a collect result is reused. */
+  private final Duration reuseWindow;
+
+  /** Optional pacing policy. */
+  private CollectPacingPolicy pacingPolicy;
+
+  /**
+   * Constructor.
+   *
+   * @param reuseWindow the duration during which a collect result is reused (if {@code null},
+   *          {@link #DEFAULT_REUSE_WINDOW} is used). A zero duration means that results are only shared with callers
+   *          that are waiting for an ongoing call
+   */
+  public CollectCoalescer(final Duration reuseWindow) {
+    this.reuseWindow = Optional.ofNullable(reuseWindow).orElse(DEFAULT_REUSE_WINDOW);
+  }
+
+  /**
+   * Collects the status for the given order.
+   *
+   * @param orderReference the order reference
+   * @param collector the function that makes the actual collect call
+   * @return a {@link Mono} delivering the collect response
+   */
+  public Mono<CollectResponse> collect(final String orderReference, final Supplier<Mono<CollectResponse>> collector) {
+    return Mono.defer(() -> this.collects.compute(orderReference, (ref, existing) -> {
+      if (existing != null && existing.isReusable(System.nanoTime())) {
+        return existing;
+      }
+      return new SharedCollect(ref, collector, existing != null ? existing.response : null);
+    }).result);
+  }
+
+  /**
+   * Assigns a {@link CollectPacingPolicy} that decides for how long results (and errors) are reused.
+   *
+   * @param pacingPolicy the pacing policy
+   */
+  public void setPacingPolicy(final CollectPacingPolicy pacingPolicy) {
+    this.pacingPolicy = pacingPolicy;
+  }
+
+  /**
+   * Removes the given order, for example when it has been cancelled.
+   *
+   * @param orderReference the order reference
+   */
+  public void remove(final String orderReference) {
+    this.collects.remove(orderReference);
+  }
+
+  /**
+   * Gets the number of orders currently held.
+   *
+   * @return the number of orders
+   */
+  int size() {
+    return this.collects.size();
+  }
+
+  /**
+   * A shared collect call.
+   */
+  private class SharedCollect {
+
+    /** The shared result. */
+    private final Mono<CollectResponse> result;
+
+    /** The response, or {@code null} if the call has not completed successfully. */
+    private volatile CollectResponse response;
+
+    /** When the call may no longer be shared (nanoTime), or {@code null} if it has not completed. */
+    private volatile Long expires;
+
+    SharedCollect(final String orderReference, final Supplier<Mono<CollectResponse>> collector,
+        final CollectResponse previous) {
+      this.result = Mono.defer(collector)
+          .doOnSuccess(r -> {
+            this.response = r;
+            final Duration reuse = this.getReuseDuration(previous, r);
+            final boolean retain = CollectCoalescer.this.pacingPolicy != null
+                && r != null && r.getStatus() == CollectResponse.Status.PENDING;
+            this.expire(orderReference, reuse, retain ? reuse.plus(PACING_RETENTION) : reuse);
+          })
+          .doOnError(e -> {
+            final Duration backoff = Optional.ofNullable(CollectCoalescer.this.pacingPolicy)
+                .map(p -> p.getErrorBackoff(e))
+                .orElse(Duration.ZERO);
+            this.expire(orderReference, backoff, backoff);
+          })
+          .cache();
+    }
+
+    /**
+     * Tells whether the call may be shared with a new caller.
+     *
+     * @param now the current time (nanoTime)
+     * @return {@code true} if the call is ongoing or has not expired
+     */
+    boolean isReusable(final long now) {
+      final Long e = this.expires;
+      return e == null || now - e < 0;
+    }
+
+    /**
+     * Marks the call as completed and schedules its removal.
+     *
+     * @param orderReference the order reference
+     * @param duration the duration during which the result may be shared
+     * @param retention the duration after which the call is removed
+     */
+    private void expire(final String orderReference, final Duration duration, final Duration retention) {
+      this.expires = System.nanoTime() + duration.toNanos();
+      if (retention.isZero()) {
+        CollectCoalescer.this.collects.remove(orderReference, this);
+      }
+      else {
+        Mono.delay(retention).subscribe(d -> CollectCoalescer.this.collects.remove(orderReference, this));
+      }
+    }
+
+    /**
+     * Gets the duration during which a successful result is reused.
+     *
+     * @param previous the previous response (may be {@code null})
+     * @param current the response
+     * @return the duration
+     */
+    private Duration getReuseDuration(final CollectResponse previous, final CollectResponse current) {
+      final Duration window = CollectCoalescer.this.reuseWindow;
+      if (CollectCoalescer.this.pacingPolicy == null) {
+        return window;
+      }
+      final Duration interval = CollectCoalescer.this.pacingPolicy.getMinimumInterval(previous, current);
+      return interval.compareTo(window) > 0 ? interval : window;
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+import se.swedenconnect.bankid.rpapi.types.BankIDException;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+import se.swedenconnect.bankid.rpapi.types.ProgressStatus;
+
+/**
+ * Policy that decides the minimum interval between two collect calls for the same order based on the progress of the
+ * order.
+ * <p>
+ * Most of the time of an order is spent waiting for the user (to scan the QR code or start the app, and then to enter
+ * the security code). The policy makes it possible to collect less frequently during these phases, and more frequently
+ * right after the progress status has changed (for example, just after the user scanned the QR code). If the BankID
+ * server reports maintenance or an internal error, further collects are backed off.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class CollectPacingPolicy {
+
+  /** The default interval used right after the progress status of an order has changed. */
+  public static final Duration DEFAULT_STATUS_CHANGE_INTERVAL = Duration.ofSeconds(1);
+
+  /** The default interval used while the order has not been received by a BankID client. */
+  public static final Duration DEFAULT_WAITING_INTERVAL = Duration.ofSeconds(2);
+
+  /** The default interval used while the user is handling the order in the BankID app. */
+  public static final Duration DEFAULT_USER_ACTION_INTERVAL = Duration.ofSeconds(3);
+
+  /** The default back-off used when BankID reports maintenance or an internal error. */
+  public static final Duration DEFAULT_ERROR_BACKOFF = Duration.ofSeconds(5);
+
+  /** The interval used right after the progress status of an order has changed. */
+  private Duration statusChangeInterval = DEFAULT_STATUS_CHANGE_INTERVAL;
+
+  /** The interval used while the order has not been received by a BankID client. */
+  private Duration waitingInterval = DEFAULT_WAITING_INTERVAL;
+
+  /** The interval used while the user is handling the order in the BankID app. */
+  private Duration userActionInterval = DEFAULT_USER_ACTION_INTERVAL;
+
+  /** The back-off used when BankID reports maintenance or an internal error. */
+  private Duration errorBackoff = DEFAULT_ERROR_BACKOFF;
+
+  /**
+   * Gets the minimum interval until the next collect for an order.
+   *
+   * @param previous the previous collect response for the order (may be {@code null})
+   * @param current the latest collect response for the order
+   * @return the minimum interval until the order should be collected again
+   */
+  public Duration getMinimumInterval(final CollectResponse previous, final CollectResponse current) {
+    if (current == null || current.getStatus() != CollectResponse.Status.PENDING) {
+      return Duration.ZERO;
+    }
+    final ProgressStatus status = current.getProgressStatus();
+    if (previous == null || !Objects.equals(previous.getProgressStatus(), status)) {
+      return this.statusChangeInterval;
+    }
+    if (status == ProgressStatus.OUTSTANDING_TRANSACTION || status == ProgressStatus.NO_CLIENT) {
+      return this.waitingInterval;
+    }
+    if (status == ProgressStatus.STARTED || status == ProgressStatus.USER_MRTD
+        || status == ProgressStatus.USER_SIGN) {
+      return this.userActionInterval;
+    }
+    return this.waitingInterval;
+  }
+
+  /**
+   * Gets the back-off to apply after a failed collect call. Maintenance and internal errors reported by BankID result in
+   * the configured back-off. For all other errors, no back-off is applied.
+   *
+   * @param error the error
+   * @return the back-off
+   */
+  public Duration getErrorBackoff(final Throwable error) {
+    Throwable t = error;
+    while (t != null) {
+      if (t instanceof final BankIDException bankIdException) {
+        final ErrorCode errorCode = bankIdException.getErrorCode();
+        if (errorCode == ErrorCode.MAINTENANCE || errorCode == ErrorCode.INTERNAL_ERROR) {
+          return this.errorBackoff;
+        }
+      }
+      t = t.getCause() != t ? t.getCause() : null;
+    }
+    return Duration.ZERO;
+  }
+
+  /**
+   * Assigns the interval used right after the progress status of an order has changed. The default is
+   * {@link #DEFAULT_STATUS_CHANGE_INTERVAL}.
+   *
+   * @param statusChangeInterval the interval
+   */
+  public void setStatusChangeInterval(final Duration statusChangeInterval) {
+    this.statusChangeInterval = Optional.ofNullable(statusChangeInterval).orElse(DEFAULT_STATUS_CHANGE_INTERVAL);
+  }
+
+  /**
+   * Assigns the interval used while the order has not been received by a BankID client
+   * ({@code outstandingTransaction} and {@code noClient}). The default is {@link #DEFAULT_WAITING_INTERVAL}.
+   *
+   * @param waitingInterval the interval
+   */
+  public void setWaitingInterval(final Duration waitingInterval) {
+    this.waitingInterval = Optional.ofNullable(waitingInterval).orElse(DEFAULT_WAITING_INTERVAL);
+  }
+
+  /**
+   * Assigns the interval used while the user is handling the order in the BankID app ({@code started},
+   * {@code userMrtd} and {@code userSign}). The default is {@link #DEFAULT_USER_ACTION_INTERVAL}.
+   *
+   * @param userActionInterval the interval
+   */
+  public void setUserActionInterval(final Duration userActionInterval) {
+    this.userActionInterval = Optional.ofNullable(userActionInterval).orElse(DEFAULT_USER_ACTION_INTERVAL);
+  }
+
+  /**
+   * Assigns the back-off used when BankID reports maintenance or an internal error. The default is
+   * {@link #DEFAULT_ERROR_BACKOFF}.
+   *
+   * @param errorBackoff the back-off
+   */
+  public void setErrorBackoff(final Duration errorBackoff) {
+    this.errorBackoff = Optional.ofNullable(errorBackoff).orElse(DEFAULT_ERROR_BACKOFF);
+  }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+
+/**
+ * A per-node scheduler that owns outstanding BankID orders and collects their status from the BankID server at a
+ * fixed pace, regardless of how often the browser polls.
+ * <p>
+ * The first time an order is collected through the scheduler, the collect call is made directly. After that the
+ * scheduler invokes collect for the order every {@code collectInterval} (BankID recommends 2 seconds) and stores the
+ * latest result. Reading the status of an order is then a cheap in-memory operation. When an order reaches a final
+ * state (complete or failed), or if an error occurs, the scheduler stops collecting and hands over the result on the
+ * next read. Orders that are not read within {@code abandonTimeout} are dropped.
+ * </p>
+ *
+ * @author Martin Lindström
+ * @author Felix Hellman
+ */
+@Slf4j
+public class CollectScheduler implements InitializingBean, DisposableBean {
+
+  /** The default interval between two collect calls for the same order. */
+  public static final Duration DEFAULT_COLLECT_INTERVAL = Duration.ofSeconds(2);
+
+  /** The default duration after which an order that is not read is dropped. */
+  public static final Duration DEFAULT_ABANDON_TIMEOUT = Duration.ofSeconds(30);
+
+  /** How often the scheduler checks for orders that are due for collection. */
+  private static final Duration TICK_INTERVAL = Duration.ofMillis(100);
+
+  /** The orders owned by the scheduler, indexed by the order reference. */
+  private final Map<String, ScheduledOrder> orders = new ConcurrentHashMap<>();
+
+  /** The interval between two collect calls for the same order. */
+  private final Duration collectInterval;
+
+  /** The duration after which an order that is not read is dropped. */
+  private final Duration abandonTimeout;
+
+  /** Optional pacing policy. */
+  private CollectPacingPolicy pacingPolicy;
+
+  /** The executor driving the scheduler. */
+  private ScheduledExecutorService executor;
+
+  /**
+   * Constructor.
+   *
+   * @param collectInterval the interval between two collect calls for the same order (if {@code null},
+   *          {@link #DEFAULT_COLLECT_INTERVAL} is used)
+   * @param abandonTimeout the duration after which an order that is not read is dropped (if {@code null},
+   *          {@link #DEFAULT_ABANDON_TIMEOUT} is used)
+   */
+  public CollectScheduler(final Duration collectInterval, final Duration abandonTimeout) {
+    this.collectInterval = Optional.ofNullable(collectInterval).orElse(DEFAULT_COLLECT_INTERVAL);
+    this.abandonTimeout = Optional.ofNullable(abandonTimeout).orElse(DEFAULT_ABANDON_TIMEOUT);
+  }
+
+  /**
+   * Gets the latest collect response for the given order.
+   * <p>
+   * If the order is not already owned by the scheduler, the supplied collector is invoked directly and the order is
+   * scheduled for further collection. Otherwise the latest stored result is returned.
+   * </p>
+   *
+   * @param orderReference the order reference
+   * @param collector the function that performs the actual collect call against the BankID server
+   * @return the latest collect response
+   */
+  public Mono<CollectResponse> collect(final String orderReference, final Supplier<Mono<CollectResponse>> collector) {
+    Objects.requireNonNull(orderReference, "orderReference must not be null");
+    final ScheduledOrder order = this.orders.computeIfAbsent(orderReference, ref -> {
+      log.debug("Order {} added to collect scheduler", ref);
+      final ScheduledOrder o = new ScheduledOrder(collector);
+      o.invoke(this::getNextInterval);
+      return o;
+    });
+    order.lastRead = Instant.now();
+
+    // The result and the done flag are read from the same holder, so that a result is never stale for an order that
+    // a concurrent tick has completed ...
+    final Result latest = order.latest;
+    if (latest.done()) {
+      this.orders.remove(orderReference, order);
+      log.debug("Order {} handed over from collect scheduler", orderReference);
+    }
+    return latest.response();
+  }
+
+  /**
+   * Removes the given order from the scheduler. Should be invoked when an order is cancelled.
+   *
+   * @param orderReference the order reference
+   */
+  public void remove(final String orderReference) {
+    if (orderReference != null && this.orders.remove(orderReference) != null) {
+      log.debug("Order {} removed from collect scheduler", orderReference);
+    }
+  }
+
+  /**
+   * Assigns a {@link CollectPacingPolicy}. If assigned, the interval between two collect calls for an order is decided
+   * by the policy instead of the fixed collect interval.
+   *
+   * @param pacingPolicy the pacing policy
+   */
+  public void setPacingPolicy(final CollectPacingPolicy pacingPolicy) {
+    this.pacingPolicy = pacingPolicy;
+  }
+
+  /**
+   * Gets the interval until the next collect for an order.
+   *
+   * @param previous the previous response (may be {@code null})
+   * @param current the latest response
+   * @return the interval
+   */
+  private Duration getNextInterval(final CollectResponse previous, final CollectResponse current) {
+    return this.pacingPolicy != null
+        ? this.pacingPolicy.getMinimumInterval(previous, current)
+        : this.collectInterval;
+  }
+
+  /**
+   * Gets the number of orders currently owned by the scheduler.
+   *
+   * @return the number of orders
+   */
+  public int size() {
+    return this.orders.size();
+  }
+
+  /**
+   * Invoked periodically to collect all orders that are due.
+   */
+  void tick() {
+    final Instant now = Instant.now();
+    this.orders.forEach((orderReference, order) -> {
+      if (order.lastRead.plus(this.abandonTimeout).isBefore(now)) {
+        log.debug("Order {} has not been read for {} - removing it from collect scheduler",
+            orderReference, this.abandonTimeout);
+        this.orders.remove(orderReference, order);
+        return;
+      }
+      if (order.latest.done() || order.inFlight) {
+        return;
+      }
+      if (!order.nextCollect.isAfter(now)) {
+        order.invoke(this::getNextInterval);
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterPropertiesSet() {
+    this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      final Thread thread = new Thread(r, "bankid-collect-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executor.scheduleWithFixedDelay(() -> {
+      try {
+        this.tick();
+      }
+      catch (final Exception e) {
+        log.error("Collect scheduler failed to process orders", e);
+      }
+    }, TICK_INTERVAL.toMillis(), TICK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    log.info("Collect scheduler started using a collect interval of {}", this.collectInterval);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void destroy() {
+    if (this.executor != null) {
+      this.executor.shutdownNow();
+    }
+    this.orders.clear();
+  }
+
+  /**
+   * Holds the state for an order owned by the scheduler.
+   */
+  private static class ScheduledOrder {
+
+    /** Performs the actual collect call. */
+    private final Supplier<Mono<CollectResponse>> collector;
+
+    /** The latest result (or the ongoing initial collect) together with the done flag. */
+    private volatile Result latest;
+
+    /** When the order was last read. */
+    private volatile Instant lastRead = Instant.now();
+
+    /** When the order is due for its next collect. */
+    private volatile Instant nextCollect = Instant.now();
+
+    /** The latest successful response. */
+    private volatile CollectResponse response;
+
+    /** Whether a collect call is currently in progress. */
+    private volatile boolean inFlight;
+
+    ScheduledOrder(final Supplier<Mono<CollectResponse>> collector) {
+      this.collector = collector;
+    }
+
+    /**
+     * Invokes the collect call and stores the result.
+     *
+     * @param interval function that, given the previous and the latest response, gives the interval until the next
+     *          collect
+     */
+    void invoke(final BiFunction<CollectResponse, CollectResponse, Duration> interval) {
+      this.inFlight = true;
+      final Mono<CollectResponse> call = Mono.defer(this.collector)
+          .doOnNext(c -> {
+            this.nextCollect = Instant.now().plus(interval.apply(this.response, c));
+            this.response = c;
+            this.latest = new Result(Mono.just(c), c.getStatus() != CollectResponse.Status.PENDING);
+          })
+          .doOnError(e -> this.latest = new Result(Mono.error(e), true))
+          .doFinally(s -> this.inFlight = false)
+          .cache();
+
+      if (this.latest == null) {
+        // The first call - readers should wait for the result ...
+        this.latest = new Result(call, false);
+      }
+      call.subscribe(c -> {}, e -> log.debug("Scheduled collect failed - {}", e.getMessage()));
+    }
+  }
+
+  /**
+   * The latest result for an order.
+   *
+   * @param response the latest response (or the ongoing initial collect)
+   * @param done whether the order has reached a final state (or failed) and should not be collected anymore
+   */
+  private record Result(Mono<CollectResponse> response, boolean done) {
+  }
+
+}
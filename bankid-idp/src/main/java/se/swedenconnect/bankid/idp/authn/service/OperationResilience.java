@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+import org.reactivestreams.Publisher;
+import org.springframework.util.Assert;
+
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.reactor.ratelimiter.operator.RateLimiterOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.Retry;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdTimeoutException;
+import se.swedenconnect.bankid.rpapi.types.BankIDException;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+
+/**
+ * Rate limiting and retries for the calls made to the BankID server. Rate limiters and retries are configured per
+ * BankID operation. Only idempotent operations (collect and cancel) may be retried.
+ * <p>
+ * The returned operators should be applied outside of the circuit breaker (see {@link RelyingPartyResilience}) so that
+ * each retry attempt is seen by the circuit breaker, and so that calls rejected by the rate limiter are not counted as
+ * BankID failures.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class OperationResilience {
+
+  /** The prefix for rate limiter and retry names. */
+  public static final String NAME_PREFIX = "bankid-";
+
+  /** Rate limiters per operation. */
+  private final Map<Operation, RateLimiter> rateLimiters = new EnumMap<>(Operation.class);
+
+  /** Retries per operation. */
+  private final Map<Operation, Retry> retries = new EnumMap<>(Operation.class);
+
+  /**
+   * Gets an operator that applies the rate limiter and retry (if configured) for the given operation.
+   *
+   * @param operation the BankID operation
+   * @return an operator
+   */
+  public <T> UnaryOperator<Publisher<T>> operator(final Operation operation) {
+    final RateLimiter rateLimiter = this.rateLimiters.get(operation);
+    final Retry retry = this.retries.get(operation);
+
+    final UnaryOperator<Publisher<T>> rateLimiterOperator =
+        rateLimiter != null ? RateLimiterOperator.of(rateLimiter) : UnaryOperator.identity();
+    if (retry == null) {
+      return rateLimiterOperator;
+    }
+    final RetryOperator<T> retryOperator = RetryOperator.of(retry);
+    return p -> retryOperator.apply(rateLimiterOperator.apply(p));
+  }
+
+  /**
+   * Assigns a rate limiter for the given operation.
+   *
+   * @param operation the BankID operation
+   * @param rateLimiter the rate limiter
+   */
+  public void setRateLimiter(final Operation operation, final RateLimiter rateLimiter) {
+    this.rateLimiters.put(Objects.requireNonNull(operation, "operation must not be null"),
+        Objects.requireNonNull(rateLimiter, "rateLimiter must not be null"));
+  }
+
+  /**
+   * Assigns a retry for the given operation. Only idempotent operations may be retried.
+   *
+   * @param operation the BankID operation
+   * @param retry the retry
+   * @throws IllegalArgumentException if the operation is not idempotent
+   */
+  public void setRetry(final Operation operation, final Retry retry) {
+    Objects.requireNonNull(operation, "operation must not be null");
+    Assert.isTrue(operation.isIdempotent(), () -> "The " + operation.getName() + " operation can not be retried");
+    this.retries.put(operation, Objects.requireNonNull(retry, "retry must not be null"));
+  }
+
+  /**
+   * Tells whether the supplied error is a transient BankID error, i.e., an error that may go away if the call is
+   * retried. This is the case for server errors, timeouts and when the BankID server reports maintenance.
+   *
+   * @param error the error
+   * @return {@code true} if the error is transient and {@code false} otherwise
+   */
+  public static boolean isTransientError(final Throwable error) {
+    Throwable t = error;
+    while (t != null) {
+      if (t instanceof BankIdServerException) {
+        return true;
+      }
+      if (t instanceof final BankIDException bankIdException) {
+        final ErrorCode errorCode = bankIdException.getErrorCode();
+        if (errorCode == ErrorCode.MAINTENANCE || errorCode == ErrorCode.INTERNAL_ERROR
+            || errorCode == ErrorCode.REQUEST_TIMEOUT || errorCode == ErrorCode.CLIENT_TIMEOUT) {
+          return true;
+        }
+      }
+      t = t.getCause() != t ? t.getCause() : null;
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether a call for the given operation that failed with the supplied error should be retried. Transient
+   * errors (see {@link #isTransientError(Throwable)}) are retried, except for collect calls that timed out. Such a call
+   * has already waited for the full collect timeout, and the next poll will collect the status anyway.
+   *
+   * @param operation the BankID operation
+   * @param error the error
+   * @return {@code true} if the call should be retried and {@code false} otherwise
+   */
+  public static boolean isRetryable(final Operation operation, final Throwable error) {
+    if (operation == Operation.COLLECT) {
+      for (Throwable t = error; t != null; t = t.getCause() != t ? t.getCause() : null) {
+        if (t instanceof BankIdTimeoutException) {
+          return false;
+        }
+      }
+    }
+    return isTransientError(error);
+  }
+
+  /**
+   * The BankID operations.
+   */
+  public enum Operation {
+
+    /** Initiation of an authentication order. */
+    AUTH("auth", false),
+
+    /** Initiation of a signature order. */
+    SIGN("sign", false),
+
+    /** Collecting the status of an order. */
+    COLLECT("collect", true),
+
+    /** Cancelling an order. */
+    CANCEL("cancel", true);
+
+    /** The operation name. */
+    private final String name;
+
+    /** Whether the operation is idempotent. */
+    private final boolean idempotent;
+
+    Operation(final String name, final boolean idempotent) {
+      this.name = name;
+      this.idempotent = idempotent;
+    }
+
+    /**
+     * Gets the operation name.
+     *
+     * @return the operation name
+     */
+    public String getName() {
+      return this.name;
+    }
+
+    /**
+     * Tells whether the operation is idempotent, and may be retried.
+     *
+     * @return {@code true} if the operation is idempotent and {@code false} otherwise
+     */
+    public boolean isIdempotent() {
+      return this.idempotent;
+    }
+  }
+
+}
@@ -41,6 +41,12 @@ public class PollRequest {
   /** Whether QR code should be displayed. */
   private final Boolean qr;
 
+  /**
+   * Whether the QR code data should be delivered instead of a QR code image (the frontend renders the QR code). Only
+   * relevant if {@code qr} is set.
+   */
+  private final Boolean qrData;
+
   /** The session state. */
   private final BankIdSessionState state;
 
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+import org.reactivestreams.Publisher;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+
+/**
+ * Resilience support where each relying party has a circuit breaker and a bulkhead of its own. This means that a
+ * misbehaving relying party (for example, one with an expired certificate) does not open the circuit for other relying
+ * parties, and that a traffic spike for one relying party can not use up all connections to the BankID server.
+ * <p>
+ * Circuit breakers and bulkheads are created on demand in the supplied registries, and are named
+ * {@value #NAME_PREFIX}&lt;relying party id&gt;.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class RelyingPartyResilience {
+
+  /** The prefix for circuit breaker and bulkhead names. */
+  public static final String NAME_PREFIX = "bankid-rp-";
+
+  /** The default maximum number of concurrent calls for one relying party. */
+  public static final int DEFAULT_MAX_CONCURRENT_CALLS = 25;
+
+  /**
+   * The default maximum time to wait for a bulkhead permit. Zero, since the calls are reactive and a wait for a permit
+   * would block the calling thread.
+   */
+  public static final Duration DEFAULT_MAX_WAIT_DURATION = Duration.ZERO;
+
+  /** The circuit breaker registry. */
+  private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+  /** The bulkhead registry. */
+  private final BulkheadRegistry bulkheadRegistry;
+
+  /**
+   * Constructor.
+   *
+   * @param circuitBreakerRegistry the circuit breaker registry
+   * @param bulkheadRegistry the bulkhead registry
+   */
+  public RelyingPartyResilience(final CircuitBreakerRegistry circuitBreakerRegistry,
+      final BulkheadRegistry bulkheadRegistry) {
+    this.circuitBreakerRegistry =
+        Objects.requireNonNull(circuitBreakerRegistry, "circuitBreakerRegistry must not be null");
+    this.bulkheadRegistry = Objects.requireNonNull(bulkheadRegistry, "bulkheadRegistry must not be null");
+  }
+
+  /**
+   * Gets an operator that decorates a call to the BankID server for the given relying party with the relying party
+   * bulkhead and circuit breaker.
+   *
+   * @param relyingPartyId the relying party id
+   * @return an operator
+   */
+  public <T> UnaryOperator<Publisher<T>> operator(final String relyingPartyId) {
+    final CircuitBreakerOperator<T> circuitBreakerOperator =
+        CircuitBreakerOperator.of(this.getCircuitBreaker(relyingPartyId));
+    final BulkheadOperator<T> bulkheadOperator = BulkheadOperator.of(this.getBulkhead(relyingPartyId));
+    return p -> circuitBreakerOperator.apply(bulkheadOperator.apply(p));
+  }
+
+  /**
+   * Gets the circuit breaker for the given relying party.
+   *
+   * @param relyingPartyId the relying party id
+   * @return a {@link CircuitBreaker}
+   */
+  public CircuitBreaker getCircuitBreaker(final String relyingPartyId) {
+    return this.circuitBreakerRegistry.circuitBreaker(NAME_PREFIX + relyingPartyId);
+  }
+
+  /**
+   * Gets the bulkhead for the given relying party.
+   *
+   * @param relyingPartyId the relying party id
+   * @return a {@link Bulkhead}
+   */
+  public Bulkhead getBulkhead(final String relyingPartyId) {
+    return this.bulkheadRegistry.bulkhead(NAME_PREFIX + relyingPartyId);
+  }
+
+  /**
+   * Tells whether the BankID service is available for the given relying party, i.e., whether the circuit breaker for
+   * the relying party is closed (or has not been created yet).
+   *
+   * @param relyingPartyId the relying party id
+   * @return {@code true} if the service is available for the relying party, and {@code false} otherwise
+   */
+  public boolean isAvailable(final String relyingPartyId) {
+    return this.circuitBreakerRegistry.find(NAME_PREFIX + relyingPartyId)
+        .map(c -> c.getState() == CircuitBreaker.State.CLOSED)
+        .orElse(true);
+  }
+
+  /**
+   * Tells whether the BankID service is available for all relying parties, i.e., whether all relying party circuit
+   * breakers are closed. This is the same meaning as when one circuit breaker is used for all relying parties, and
+   * should only be used when the relying party is not known (see {@link #isAvailable(String)}).
+   *
+   * @return {@code true} if all relying party circuit breakers are closed, and {@code false} otherwise
+   */
+  public boolean isAvailable() {
+    return this.circuitBreakerRegistry.getAllCircuitBreakers().stream()
+        .filter(c -> c.getName().startsWith(NAME_PREFIX))
+        .allMatch(c -> c.getState() == CircuitBreaker.State.CLOSED);
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.util.Objects;
+
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * A Redisson codec for the BankID session hashes. {@link BankIdSessionState} values are encoded using the compact
+ * {@link BankIdSessionStateCodec}, and all other values (and keys) are handled by the underlying codec.
+ * <p>
+ * Values that were written using the underlying codec (for example, before this codec was enabled) can still be read.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class BankIdSessionCodec extends BaseCodec {
+
+  /** The underlying codec. */
+  private final Codec codec;
+
+  /** The value encoder. */
+  private final Encoder encoder;
+
+  /** The value decoder. */
+  private final Decoder<Object> decoder;
+
+  /**
+   * Constructor.
+   *
+   * @param codec the underlying codec, used for everything except {@link BankIdSessionState} values
+   */
+  public BankIdSessionCodec(final Codec codec) {
+    this.codec = Objects.requireNonNull(codec, "codec must not be null");
+    this.encoder = in -> {
+      if (in instanceof final BankIdSessionState state) {
+        final byte[] encoding = BankIdSessionStateCodec.encode(state);
+        final ByteBuf out = ByteBufAllocator.DEFAULT.buffer(encoding.length);
+        out.writeBytes(encoding);
+        return out;
+      }
+      return codec.getMapValueEncoder().encode(in);
+    };
+    this.decoder = (buf, state) -> {
+      if (buf.readableBytes() > 2 && BankIdSessionStateCodec.isEncoding(
+          buf.getByte(buf.readerIndex()), buf.getByte(buf.readerIndex() + 1))) {
+        final byte[] encoding = new byte[buf.readableBytes()];
+        buf.readBytes(encoding);
+        return BankIdSessionStateCodec.decode(encoding);
+      }
+      return codec.getMapValueDecoder().decode(buf, state);
+    };
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Decoder<Object> getValueDecoder() {
+    return this.decoder;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Encoder getValueEncoder() {
+    return this.encoder;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Decoder<Object> getMapKeyDecoder() {
+    return this.codec.getMapKeyDecoder();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Encoder getMapKeyEncoder() {
+    return this.codec.getMapKeyEncoder();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ClassLoader getClassLoader() {
+    return this.codec.getClassLoader();
+  }
+
+}
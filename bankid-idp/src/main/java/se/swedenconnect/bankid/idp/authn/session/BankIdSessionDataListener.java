@@ -15,12 +15,14 @@
  */
 package se.swedenconnect.bankid.idp.authn.session;
 
+import java.time.Instant;
 import java.util.Map;
 
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
 import se.swedenconnect.bankid.idp.authn.context.PreviousDeviceSelection;
@@ -90,6 +92,12 @@ public class BankIdSessionDataListener {
 
   /**
    * Writes a published {@link CollectResponseEvent} to the user's session.
+   * <p>
+   * Most collect responses for a pending order are identical to the previous one (the user has not yet started the
+   * BankID app). If the resulting {@link BankIdSessionData} equals the stored data, i.e., status (hint code), error
+   * code and message code are unchanged, nothing is written. See {@link #isWriteRequired(BankIdSessionState,
+   * BankIdSessionData, HttpServletRequest)}.
+   * </p>
    *
    * @param event event to be processed
    * @see CollectResponseEvent
@@ -100,15 +108,52 @@ public class BankIdSessionDataListener {
 
     log.debug("Collect response event was published {} for session {}", event.getCollectResponse(), session.getId());
 
-    final BankIdSessionData previous =
-        this.reader.loadSessionData(event.getRequest().getRequest()).getBankIdSessionData();
-    this.writer.save(event.getRequest().getRequest(), BankIdSessionData.of(previous, event.getCollectResponse(), event.getRequest().getQr()));
+    final BankIdSessionState state = this.reader.loadSessionData(event.getRequest().getRequest());
+    final BankIdSessionData previous = state.getBankIdSessionData();
+    final BankIdSessionData data =
+        BankIdSessionData.of(previous, event.getCollectResponse(), event.getRequest().getQr());
 
     if (event.getCollectResponse().getStatus().equals(CollectResponse.Status.COMPLETE)) {
-      this.writer.save(event.getRequest().getRequest(), event.getCollectResponse());
+      this.writer.save(event.getRequest().getRequest(), data, event.getCollectResponse());
+    }
+    else if (isWriteRequired(state, data, event.getRequest().getRequest())) {
+      this.writer.save(event.getRequest().getRequest(), data);
+    }
+    else {
+      log.trace("BankID session data unchanged for session {}, skipping write", session.getId());
     }
   }
 
+  /**
+   * Predicate telling whether the updated BankID session data needs to be written.
+   * <p>
+   * A write is required if the data has changed. Since every write also refreshes the expiration time of the stored
+   * session data, unchanged data is still written if more than half of the session's max inactive interval has passed
+   * since the state was last written. This way the expiration time is refreshed lazily, without any extra operations.
+   * </p>
+   *
+   * @param state the stored state
+   * @param data the updated data
+   * @param request the HTTP servlet request
+   * @return {@code true} if the data should be written and {@code false} otherwise
+   */
+  static boolean isWriteRequired(
+      final BankIdSessionState state, final BankIdSessionData data, final HttpServletRequest request) {
+    if (!data.equals(state.getBankIdSessionData())) {
+      return true;
+    }
+    final Instant lastWriteTime = state.getLastWriteTime();
+    if (lastWriteTime == null) {
+      return true;
+    }
+    final int maxInactiveInterval = request.getSession().getMaxInactiveInterval();
+    if (maxInactiveInterval <= 0) {
+      // The session never times out ...
+      return false;
+    }
+    return Instant.now().isAfter(lastWriteTime.plusSeconds(maxInactiveInterval / 2));
+  }
+
   /**
    * Writes a published {@link OrderCompletionEvent} to the user's session.
    *
@@ -121,8 +166,7 @@ public class BankIdSessionDataListener {
     final BankIdSessionState sessionState = this.reader.loadSessionData(event.getRequest());
     final Boolean otherDevice = sessionState.getBankIdSessionData().getShowQr();
     final PreviousDeviceSelection previousDeviceSelection = PREVIOUS_DEVICE_SELECTION_MAP.get(otherDevice);
-    this.writer.save(event.getRequest(), previousDeviceSelection);
-    this.writer.delete(event.getRequest());
+    this.writer.complete(event.getRequest(), previousDeviceSelection);
   }
 
   /**
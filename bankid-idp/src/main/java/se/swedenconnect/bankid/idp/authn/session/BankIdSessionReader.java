@@ -33,7 +33,7 @@ public interface BankIdSessionReader {
    * Loads session data.
    *
    * @param request the current request for the user to determine session key
-   * @return a {@link BankIdSessionState}
+   * @return a {@link BankIdSessionState}, or {@code null} if no state (holding session data) is available
    */
   BankIdSessionState loadSessionData(final HttpServletRequest request);
 
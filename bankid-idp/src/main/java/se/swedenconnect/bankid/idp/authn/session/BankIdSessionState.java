@@ -15,64 +15,136 @@
  */
 package se.swedenconnect.bankid.idp.authn.session;
 
+import java.io.Serializable;
 import java.time.Instant;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import se.swedenconnect.bankid.idp.ApplicationVersion;
 
 /**
- * Container for multiple BankID session states.
+ * Container for the BankID session state.
  * <p>
- * This is construct serves the purpose of holding all sessions that gets started when a user starts authentication for
- * the strict purpose of being able to refer to the first initial session as well as the most current one.
+ * When a user starts authentication, several BankID orders may be started (for example, if the start fails and a new
+ * order is silently started). This construct holds the most current session data along with the order time of the
+ * first, initial, order. Only the most current session data is kept, so the size of the state stays constant no matter
+ * how many orders are started.
  * </p>
  *
  * @author Martin Lindström
  * @author Felix Hellman
  */
-public class BankIdSessionState {
+public class BankIdSessionState implements Serializable {
+
+  private static final long serialVersionUID = ApplicationVersion.SERIAL_VERSION_UID;
+
+  /** The most current session data. */
+  private BankIdSessionData current;
+
+  /** The order time of the initial order. */
+  private Instant initialOrderTime;
 
-  private final Deque<BankIdSessionData> bankIdSessionDataStack;
+  /** The number of orders held by this state. */
+  private int orders;
+
+  /** The time when this state was last written to the session. */
+  private Instant lastWriteTime;
 
   /**
    * Constructor.
    */
   public BankIdSessionState() {
-    this.bankIdSessionDataStack = new ArrayDeque<>();
   }
 
   /**
-   * Operation to insert a new session data.
+   * Constructor.
    *
-   * @param data new session data
+   * @param current the most current session data
+   * @param initialOrderTime the order time of the initial order
+   * @param orders the number of orders held by this state
    */
-  public void push(final BankIdSessionData data) {
-    this.bankIdSessionDataStack.push(data);
+  BankIdSessionState(final BankIdSessionData current, final Instant initialOrderTime, final int orders) {
+    this.current = current;
+    this.initialOrderTime = initialOrderTime;
+    this.orders = orders;
   }
 
   /**
-   * Operation to remove the most current session data.
+   * Creates a new {@link BankIdSessionState} where the supplied data is the most current. If the data is for the same
+   * order as the current data, the current data is replaced, otherwise the new data is added as a new order. This
+   * object is not modified.
    *
-   * @return old session data
+   * @param data the new session data
+   * @return a new {@link BankIdSessionState}
    */
-  public BankIdSessionData pop() {
-    return this.bankIdSessionDataStack.removeFirst();
+  public BankIdSessionState with(final BankIdSessionData data) {
+    Objects.requireNonNull(data, "data must not be null");
+    if (this.current != null && Objects.equals(this.current.getOrderReference(), data.getOrderReference())) {
+      return new BankIdSessionState(data, this.initialOrderTime, this.orders);
+    }
+    return new BankIdSessionState(data, this.orders == 0 ? data.getStartTime() : this.initialOrderTime,
+        this.orders + 1);
   }
 
   /**
    * Gets the most current session data.
    *
    * @return most current bankid session data
+   * @throws NoSuchElementException if the state holds no session data
    */
   public BankIdSessionData getBankIdSessionData() {
-    return this.bankIdSessionDataStack.getFirst();
+    if (this.current == null) {
+      throw new NoSuchElementException("No BankID session data available");
+    }
+    return this.current;
   }
 
   /**
    * Gets the instant for the first response.
    *
    * @return point in time of the first response
+   * @throws NoSuchElementException if the state holds no session data
    */
   public Instant getInitialOrderTime() {
-    return this.bankIdSessionDataStack.getLast().getStartTime();
+    if (this.orders == 0) {
+      throw new NoSuchElementException("No BankID session data available");
+    }
+    return this.initialOrderTime;
+  }
+
+  /**
+   * Gets the number of orders held by this state.
+   *
+   * @return the number of orders
+   */
+  public int getOrders() {
+    return this.orders;
+  }
+
+  /**
+   * Gets the time when this state was last written to the session.
+   *
+   * @return the last write time, or {@code null} if not known
+   */
+  public Instant getLastWriteTime() {
+    return this.lastWriteTime;
+  }
+
+  /**
+   * Assigns the time when this state was written to the session.
+   *
+   * @param lastWriteTime the write time
+   */
+  void setLastWriteTime(final Instant lastWriteTime) {
+    this.lastWriteTime = lastWriteTime;
+  }
+
+  /**
+   * Gets the most current session data, or {@code null} if none is available. Used when encoding the state.
+   *
+   * @return the most current session data or {@code null}
+   */
+  BankIdSessionData getCurrent() {
+    return this.current;
   }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Objects;
+
+import se.swedenconnect.bankid.idp.authn.context.BankIdOperation;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+import se.swedenconnect.bankid.rpapi.types.ProgressStatus;
+
+/**
+ * A compact, versioned, binary encoding of {@link BankIdSessionState} objects.
+ * <p>
+ * The encoding contains no class metadata. Instants are encoded as milliseconds since the epoch, enums as their
+ * ordinal values and strings as modified UTF-8. Absent fields are not written at all, instead a bit mask tells which
+ * fields are present. An encoding starts with the two magic bytes {@code 0xB1 0xD5} followed by a version byte.
+ * </p>
+ * <p>
+ * An encoding holds the number of orders, the initial order time, the last write time and the most current session
+ * data.
+ * </p>
+ * <p>
+ * Note: Since enums are encoded using their ordinal values, new enum constants must be added last. Otherwise, the
+ * version must be increased.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class BankIdSessionStateCodec {
+
+  /** The first magic byte. */
+  static final byte MAGIC_0 = (byte) 0xB1;
+
+  /** The second magic byte. */
+  static final byte MAGIC_1 = (byte) 0xD5;
+
+  /** The current encoding version. */
+  public static final int VERSION = 1;
+
+  // Bits for the state presence mask.
+  private static final int STATE_CURRENT = 1;
+  private static final int STATE_INITIAL_ORDER_TIME = 1 << 1;
+  private static final int STATE_LAST_WRITE_TIME = 1 << 2;
+
+  // Bits for the presence mask. Each bit tells whether the corresponding field is present.
+  private static final int AUTO_START_TOKEN = 1;
+  private static final int QR_START_TOKEN = 1 << 1;
+  private static final int QR_START_SECRET = 1 << 2;
+  private static final int START_TIME = 1 << 3;
+  private static final int ORDER_REFERENCE = 1 << 4;
+  private static final int STATUS = 1 << 5;
+  private static final int ERROR_CODE = 1 << 6;
+  private static final int START_FAILED = 1 << 7;
+  private static final int SESSION_EXPIRED = 1 << 8;
+  private static final int MESSAGE_CODE = 1 << 9;
+  private static final int SHOW_QR = 1 << 10;
+  private static final int OPERATION = 1 << 11;
+
+  // Bits for the boolean values (only relevant if the field is present).
+  private static final int START_FAILED_VALUE = 1;
+  private static final int SESSION_EXPIRED_VALUE = 1 << 1;
+  private static final int SHOW_QR_VALUE = 1 << 2;
+
+  // Hidden constructor
+  private BankIdSessionStateCodec() {
+  }
+
+  /**
+   * Tells whether the two first bytes of an encoding tells that it was produced by this codec.
+   *
+   * @param first the first byte
+   * @param second the second byte
+   * @return {@code true} if the bytes are the magic bytes of this codec, and {@code false} otherwise
+   */
+  public static boolean isEncoding(final byte first, final byte second) {
+    return first == MAGIC_0 && second == MAGIC_1;
+  }
+
+  /**
+   * Encodes the supplied {@link BankIdSessionState}.
+   *
+   * @param state the state to encode
+   * @return the encoding
+   */
+  public static byte[] encode(final BankIdSessionState state) {
+    Objects.requireNonNull(state, "state must not be null");
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(MAGIC_0);
+      out.writeByte(MAGIC_1);
+      out.writeByte(VERSION);
+      out.writeShort(state.getOrders());
+      final BankIdSessionData current = state.getCurrent();
+      final Instant initialOrderTime = state.getOrders() > 0 ? state.getInitialOrderTime() : null;
+      final Instant lastWriteTime = state.getLastWriteTime();
+      out.writeByte((current != null ? STATE_CURRENT : 0)
+          | (initialOrderTime != null ? STATE_INITIAL_ORDER_TIME : 0)
+          | (lastWriteTime != null ? STATE_LAST_WRITE_TIME : 0));
+      if (initialOrderTime != null) {
+        out.writeLong(initialOrderTime.toEpochMilli());
+      }
+      if (lastWriteTime != null) {
+        out.writeLong(lastWriteTime.toEpochMilli());
+      }
+      if (current != null) {
+        encode(current, out);
+      }
+    }
+    catch (final IOException e) {
+      // Can not happen for a ByteArrayOutputStream
+      throw new IllegalStateException("Failed to encode BankID session state", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes an encoding into a {@link BankIdSessionState}.
+   *
+   * @param encoding the encoding
+   * @return a {@link BankIdSessionState}
+   * @throws IOException for decoding errors
+   */
+  public static BankIdSessionState decode(final byte[] encoding) throws IOException {
+    try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoding))) {
+      if (!isEncoding(in.readByte(), in.readByte())) {
+        throw new IOException("Not an encoded BankID session state");
+      }
+      final int version = in.readUnsignedByte();
+      if (version != VERSION) {
+        throw new IOException("Unsupported BankID session state encoding version: " + version);
+      }
+      final int orders = in.readUnsignedShort();
+      final int mask = in.readUnsignedByte();
+      final Instant initialOrderTime =
+          (mask & STATE_INITIAL_ORDER_TIME) != 0 ? Instant.ofEpochMilli(in.readLong()) : null;
+      final Instant lastWriteTime =
+          (mask & STATE_LAST_WRITE_TIME) != 0 ? Instant.ofEpochMilli(in.readLong()) : null;
+      final BankIdSessionData current = (mask & STATE_CURRENT) != 0 ? decodeData(in) : null;
+      final BankIdSessionState state = new BankIdSessionState(current, initialOrderTime, orders);
+      state.setLastWriteTime(lastWriteTime);
+      return state;
+    }
+  }
+
+  /**
+   * Encodes a {@link BankIdSessionData} object.
+   *
+   * @param data the data to encode
+   * @param out the output stream
+   * @throws IOException for write errors
+   */
+  private static void encode(final BankIdSessionData data, final DataOutputStream out) throws IOException {
+    int mask = 0;
+    int values = 0;
+    mask |= data.getAutoStartToken() != null ? AUTO_START_TOKEN : 0;
+    mask |= data.getQrStartToken() != null ? QR_START_TOKEN : 0;
+    mask |= data.getQrStartSecret() != null ? QR_START_SECRET : 0;
+    mask |= data.getStartTime() != null ? START_TIME : 0;
+    mask |= data.getOrderReference() != null ? ORDER_REFERENCE : 0;
+    mask |= data.getStatus() != null ? STATUS : 0;
+    mask |= data.getErrorCode() != null ? ERROR_CODE : 0;
+    if (data.getStartFailed() != null) {
+      mask |= START_FAILED;
+      values |= data.getStartFailed() ? START_FAILED_VALUE : 0;
+    }
+    if (data.getSessionExpired() != null) {
+      mask |= SESSION_EXPIRED;
+      values |= data.getSessionExpired() ? SESSION_EXPIRED_VALUE : 0;
+    }
+    mask |= data.getMessageCode() != null ? MESSAGE_CODE : 0;
+    if (data.getShowQr() != null) {
+      mask |= SHOW_QR;
+      values |= data.getShowQr() ? SHOW_QR_VALUE : 0;
+    }
+    mask |= data.getOperation() != null ? OPERATION : 0;
+
+    out.writeShort(mask);
+    out.writeByte(values);
+    if ((mask & AUTO_START_TOKEN) != 0) {
+      out.writeUTF(data.getAutoStartToken());
+    }
+    if ((mask & QR_START_TOKEN) != 0) {
+      out.writeUTF(data.getQrStartToken());
+    }
+    if ((mask & QR_START_SECRET) != 0) {
+      out.writeUTF(data.getQrStartSecret());
+    }
+    if ((mask & START_TIME) != 0) {
+      out.writeLong(data.getStartTime().toEpochMilli());
+    }
+    if ((mask & ORDER_REFERENCE) != 0) {
+      out.writeUTF(data.getOrderReference());
+    }
+    if ((mask & STATUS) != 0) {
+      out.writeByte(data.getStatus().ordinal());
+    }
+    if ((mask & ERROR_CODE) != 0) {
+      out.writeByte(data.getErrorCode().ordinal());
+    }
+    if ((mask & MESSAGE_CODE) != 0) {
+      out.writeUTF(data.getMessageCode());
+    }
+    if ((mask & OPERATION) != 0) {
+      out.writeByte(data.getOperation().ordinal());
+    }
+  }
+
+  /**
+   * Decodes a {@link BankIdSessionData} object.
+   *
+   * @param in the input stream
+   * @return a {@link BankIdSessionData}
+   * @throws IOException for read errors
+   */
+  private static BankIdSessionData decodeData(final DataInputStream in) throws IOException {
+    final int mask = in.readUnsignedShort();
+    final int values = in.readUnsignedByte();
+    final BankIdSessionData.BankIdSessionDataBuilder builder = BankIdSessionData.builder();
+    if ((mask & AUTO_START_TOKEN) != 0) {
+      builder.autoStartToken(in.readUTF());
+    }
+    if ((mask & QR_START_TOKEN) != 0) {
+      builder.qrStartToken(in.readUTF());
+    }
+    if ((mask & QR_START_SECRET) != 0) {
+      builder.qrStartSecret(in.readUTF());
+    }
+    if ((mask & START_TIME) != 0) {
+      builder.startTime(Instant.ofEpochMilli(in.readLong()));
+    }
+    if ((mask & ORDER_REFERENCE) != 0) {
+      builder.orderReference(in.readUTF());
+    }
+    if ((mask & STATUS) != 0) {
+      builder.status(enumValue(ProgressStatus.values(), in.readUnsignedByte()));
+    }
+    if ((mask & ERROR_CODE) != 0) {
+      builder.errorCode(enumValue(ErrorCode.values(), in.readUnsignedByte()));
+    }
+    if ((mask & START_FAILED) != 0) {
+      builder.startFailed((values & START_FAILED_VALUE) != 0);
+    }
+    if ((mask & SESSION_EXPIRED) != 0) {
+      builder.sessionExpired((values & SESSION_EXPIRED_VALUE) != 0);
+    }
+    if ((mask & MESSAGE_CODE) != 0) {
+      builder.messageCode(in.readUTF());
+    }
+    if ((mask & SHOW_QR) != 0) {
+      builder.showQr((values & SHOW_QR_VALUE) != 0);
+    }
+    if ((mask & OPERATION) != 0) {
+      builder.operation(enumValue(BankIdOperation.values(), in.readUnsignedByte()));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets the enum constant for the given ordinal.
+   *
+   * @param values the enum constants
+   * @param ordinal the ordinal
+   * @return the enum constant
+   * @throws IOException if the ordinal is out of range
+   */
+  private static <E extends Enum<E>> E enumValue(final E[] values, final int ordinal) throws IOException {
+    if (ordinal >= values.length) {
+      throw new IOException("Invalid ordinal %d for %s".formatted(ordinal, values.getClass().getComponentType()));
+    }
+    return values[ordinal];
+  }
+
+}
@@ -44,6 +44,16 @@ public interface BankIdSessionWriter {
    */
   void save(final HttpServletRequest request, final CollectResponse data);
 
+  /**
+   * Saves {@link BankIdSessionData} together with the final {@link CollectResponse} (that contains CompletionData) in
+   * one operation.
+   *
+   * @param request to determine session key
+   * @param data to be saved
+   * @param completionData the final collect response
+   */
+  void save(final HttpServletRequest request, final BankIdSessionData data, final CollectResponse completionData);
+
   /**
    * Deletes everything except device selection for finalized authentication.
    *
@@ -51,6 +61,14 @@ public interface BankIdSessionWriter {
    */
   void delete(final HttpServletRequest request);
 
+  /**
+   * Saves the device selection and deletes everything else for a finalized authentication in one operation.
+   *
+   * @param request to determine session key
+   * @param previousDeviceSelection device used for authentication
+   */
+  void complete(final HttpServletRequest request, final PreviousDeviceSelection previousDeviceSelection);
+
   /**
    * Loads previous device selection from successful authentication.
    *
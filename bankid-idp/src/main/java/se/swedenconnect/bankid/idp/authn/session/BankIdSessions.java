@@ -15,6 +15,9 @@
  */
 package se.swedenconnect.bankid.idp.authn.session;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import org.springframework.stereotype.Service;
@@ -49,16 +52,7 @@ public class BankIdSessions implements BankIdSessionWriter, BankIdSessionReader
   /** {@inheritDoc} */
   @Override
   public void save(final HttpServletRequest request, final BankIdSessionData data) {
-    BankIdSessionState state =
-        this.sessionDao.read(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, BankIdSessionState.class, request);
-    if (state == null) {
-      state = new BankIdSessionState();
-    }
-    else if (state.getBankIdSessionData().getOrderReference().equals(data.getOrderReference())) {
-      state.pop();
-    }
-    state.push(data);
-    this.sessionDao.write(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, state, request);
+    this.sessionDao.write(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, this.updateState(request, data), request);
   }
 
   /** {@inheritDoc} */
@@ -67,10 +61,44 @@ public class BankIdSessions implements BankIdSessionWriter, BankIdSessionReader
     this.sessionDao.write(BankIdSessionAttributeKeys.BANKID_COMPLETION_DATA_ATTRIBUTE, data, request);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public void save(
+      final HttpServletRequest request, final BankIdSessionData data, final CollectResponse completionData) {
+    this.sessionDao.update(Map.of(
+        BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, this.updateState(request, data),
+        BankIdSessionAttributeKeys.BANKID_COMPLETION_DATA_ATTRIBUTE, completionData), List.of(), request);
+  }
+
   /** {@inheritDoc} */
   @Override
   public void delete(final HttpServletRequest request) {
-    BankIdSessionAttributeKeys.BANKID_VOLATILE_ATTRIBUTES.forEach(key -> this.sessionDao.remove(key, request));
+    this.sessionDao.update(Map.of(), BankIdSessionAttributeKeys.BANKID_VOLATILE_ATTRIBUTES, request);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void complete(final HttpServletRequest request, final PreviousDeviceSelection previousDeviceSelection) {
+    this.sessionDao.update(
+        Map.of(BankIdSessionAttributeKeys.PREVIOUS_DEVICE_SESSION_ATTRIBUTE, previousDeviceSelection.getValue()),
+        BankIdSessionAttributeKeys.BANKID_VOLATILE_ATTRIBUTES, request);
+  }
+
+  /**
+   * Reads the current BankID session state and creates an updated state given the supplied data. If the data is for the
+   * same order as the current data, the current data is replaced. The state that was read is not modified. The updated
+   * state is about to be written, so its last write time is set.
+   *
+   * @param request the HTTP servlet request
+   * @param data the BankID session data
+   * @return the updated state
+   */
+  private BankIdSessionState updateState(final HttpServletRequest request, final BankIdSessionData data) {
+    final BankIdSessionState state =
+        this.sessionDao.read(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, BankIdSessionState.class, request);
+    final BankIdSessionState updated = (state != null ? state : new BankIdSessionState()).with(data);
+    updated.setLastWriteTime(Instant.now());
+    return updated;
   }
 
   /** {@inheritDoc} */
@@ -83,7 +111,13 @@ public class BankIdSessions implements BankIdSessionWriter, BankIdSessionReader
   /** {@inheritDoc} */
   @Override
   public BankIdSessionState loadSessionData(final HttpServletRequest request) {
-    return this.sessionDao.read(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, BankIdSessionState.class, request);
+    final BankIdSessionState state =
+        this.sessionDao.read(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, BankIdSessionState.class, request);
+
+    // A state without session data is never written. But a state written using an earlier layout of the class, and
+    // read using the default Redis codec, ends up without data. Such a state is treated as no state at all ...
+    //
+    return state != null && state.getOrders() > 0 ? state : null;
   }
 
   /** {@inheritDoc} */
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * A {@link SessionDao} that caches the objects read from an underlying {@link SessionDao} for the duration of the
+ * current HTTP request. This means that the same session object is read at most once per request, even if several
+ * components (controller, listeners, readers) ask for it.
+ * <p>
+ * Writes and removals are passed on to the underlying {@link SessionDao}, and are reflected in the request cache.
+ * </p>
+ * <p>
+ * Long-lived requests that make several independent operations, such as the status stream, must clear the cache
+ * before each operation (see {@link #clearCache(HttpServletRequest)}). Otherwise they would keep reading the objects
+ * cached by the first operation.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class CachingSessionDao implements SessionDao {
+
+  /** The prefix for the request attribute holding the cache. */
+  private static final String CACHE_ATTRIBUTE_PREFIX = CachingSessionDao.class.getName() + ".";
+
+  /** Represents a cached {@code null} value. */
+  private static final Object NULL_VALUE = new Object();
+
+  /** The underlying session DAO. */
+  private final SessionDao sessionDao;
+
+  /**
+   * Constructor.
+   *
+   * @param sessionDao the underlying session DAO
+   */
+  public CachingSessionDao(final SessionDao sessionDao) {
+    this.sessionDao = Objects.requireNonNull(sessionDao, "sessionDao must not be null");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(final String key, final Object value, final HttpServletRequest request) {
+    this.sessionDao.write(key, value, request);
+    this.getCache(request).put(key, value != null ? value : NULL_VALUE);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <T> T read(final String key, final Class<T> tClass, final HttpServletRequest request) {
+    final Map<String, Object> cache = this.getCache(request);
+    final Object cached = cache.get(key);
+    if (cached != null) {
+      return cached == NULL_VALUE ? null : tClass.cast(cached);
+    }
+    final T value = this.sessionDao.read(key, tClass, request);
+    cache.put(key, value != null ? value : NULL_VALUE);
+    return value;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void remove(final String key, final HttpServletRequest request) {
+    this.sessionDao.remove(key, request);
+    this.getCache(request).put(key, NULL_VALUE);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void update(
+      final Map<String, Object> values, final Collection<String> removedKeys, final HttpServletRequest request) {
+    this.sessionDao.update(values, removedKeys, request);
+    final Map<String, Object> cache = this.getCache(request);
+    removedKeys.forEach(key -> cache.put(key, NULL_VALUE));
+    values.forEach((key, value) -> cache.put(key, value != null ? value : NULL_VALUE));
+  }
+
+  /**
+   * Clears the cache for the current request, meaning that the next read of a session object is made from the
+   * underlying {@link SessionDao}.
+   *
+   * @param request the HTTP servlet request
+   */
+  public static void clearCache(final HttpServletRequest request) {
+    final HttpSession session = request.getSession(false);
+    if (session != null) {
+      request.removeAttribute(CACHE_ATTRIBUTE_PREFIX + session.getId());
+    }
+  }
+
+  /**
+   * Gets the cache for the current request and session.
+   *
+   * @param request the HTTP servlet request
+   * @return the cache
+   */
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> getCache(final HttpServletRequest request) {
+    final String attributeName = CACHE_ATTRIBUTE_PREFIX + request.getSession().getId();
+    Map<String, Object> cache = (Map<String, Object>) request.getAttribute(attributeName);
+    if (cache == null) {
+      cache = new ConcurrentHashMap<>();
+      request.setAttribute(attributeName, cache);
+    }
+    return cache;
+  }
+
+}
@@ -15,24 +15,66 @@
  */
 package se.swedenconnect.bankid.idp.authn.session;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RBatch;
+import org.redisson.api.RLocalCachedMap;
 import org.redisson.api.RMap;
+import org.redisson.api.RMapAsync;
 import org.redisson.api.RedissonClient;
+import org.redisson.api.options.LocalCachedMapOptions;
+import org.redisson.client.codec.Codec;
 
 import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * Redis implementation of the {@link SessionDao} interface.
+ * <p>
+ * The objects are stored in a Redis hash for each session. Writes, including the refresh of the expiration time, are
+ * sent to Redis in one atomic batch (i.e., one round-trip).
+ * </p>
+ * <p>
+ * Optionally, a near-cache may be enabled (see {@link #setNearCache(int, Duration)}). The session hashes are then
+ * accessed as Redisson local cached maps, and reads are served from the local cache. Updates made by other IdP
+ * instances invalidate the local cache entries (via invalidation messages). Since the local cache must be notified, an
+ * update is then made using the local cached map instead of a batch.
+ * </p>
  *
  * @author Martin Lindström
  * @author Felix Hellman
  */
 public class RedisSessionDao implements SessionDao {
 
+  /** Options for the batches used to update the session hash. */
+  private static final BatchOptions BATCH_OPTIONS = BatchOptions.defaults()
+      .executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC)
+      .skipResult();
+
+  /** The Redis client. */
   private final RedissonClient client;
 
+  /** The local cached maps (if near-cache is enabled), ordered by access. Guarded by its own monitor. */
+  private LinkedHashMap<String, RLocalCachedMap<Object, Object>> localCachedMaps;
+
+  /** The maximum number of local cached maps (if near-cache is enabled). */
+  private int maxLocalCachedMaps;
+
+  /** The time to live for near-cache entries. */
+  private Duration nearCacheTimeToLive;
+
+  /** The codec used for the session hashes. If not assigned, the client default codec is used. */
+  private Codec codec;
+
   /**
    * Constructor.
    *
@@ -45,9 +87,7 @@ public class RedisSessionDao implements SessionDao {
   /** {@inheritDoc} */
   @Override
   public void write(final String key, final Object value, final HttpServletRequest request) {
-    final RMap<Object, Object> map = this.getRedisHashForUser(request);
-    map.fastPut(key, value);
-    map.expire(Instant.now().plusSeconds(request.getSession().getMaxInactiveInterval()));
+    this.update(Collections.singletonMap(key, value), List.of(), request);
   }
 
   /** {@inheritDoc} */
@@ -60,13 +100,155 @@ public class RedisSessionDao implements SessionDao {
   /** {@inheritDoc} */
   @Override
   public void remove(final String key, final HttpServletRequest request) {
-    final RMap<Object, Object> map = this.getRedisHashForUser(request);
-    map.remove(key);
+    this.getRedisHashForUser(request).fastRemove(key);
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Writes and removes the objects in one atomic batch. If objects are written, the expiration time of the session
+   * hash is also updated.
+   */
+  @Override
+  public void update(
+      final Map<String, Object> values, final Collection<String> removedKeys, final HttpServletRequest request) {
+    if (values.isEmpty() && removedKeys.isEmpty()) {
+      return;
+    }
+    if (this.localCachedMaps != null) {
+      final RMap<Object, Object> map = this.getRedisHashForUser(request);
+      if (!removedKeys.isEmpty()) {
+        map.fastRemove(removedKeys.toArray());
+      }
+      if (!values.isEmpty()) {
+        map.putAll(values);
+        map.expire(Instant.now().plusSeconds(request.getSession().getMaxInactiveInterval()));
+      }
+      return;
+    }
+    final RBatch batch = this.client.createBatch(BATCH_OPTIONS);
+    final RMapAsync<Object, Object> map = this.codec != null
+        ? batch.getMap(this.getRedisHashName(request), this.codec)
+        : batch.getMap(this.getRedisHashName(request));
+    if (!removedKeys.isEmpty()) {
+      map.fastRemoveAsync(removedKeys.toArray());
+    }
+    if (!values.isEmpty()) {
+      map.putAllAsync(values);
+      map.expireAsync(Instant.now().plusSeconds(request.getSession().getMaxInactiveInterval()));
+    }
+    batch.execute();
+  }
+
+  /**
+   * Assigns the codec to use for the session hashes. If not assigned, the default codec of the Redis client is used.
+   *
+   * @param codec the codec
+   * @see BankIdSessionCodec
+   */
+  public void setCodec(final Codec codec) {
+    this.codec = codec;
+  }
+
+  /**
+   * Enables the near-cache for the session hashes.
+   * <p>
+   * Each local cached map subscribes to invalidation messages, i.e., each session with a local cached map costs one
+   * topic subscription (a listener on a shared Redis connection) and a small local cache. Therefore, local cached maps
+   * are kept for at most {@code maxSessions} sessions (10000 by default in the IdP configuration). When this number is
+   * exceeded, the least recently used map is destroyed, which removes its subscription. The next access for that
+   * session creates a new map, and subscription, and reads from Redis.
+   * </p>
+   *
+   * @param maxSessions the maximum number of sessions for which local cached maps are kept
+   * @param timeToLive the time to live for near-cache entries
+   */
+  public void setNearCache(final int maxSessions, final Duration timeToLive) {
+    if (maxSessions <= 0) {
+      throw new IllegalArgumentException("maxSessions must be greater than 0");
+    }
+    this.nearCacheTimeToLive = Objects.requireNonNull(timeToLive, "timeToLive must not be null");
+    this.maxLocalCachedMaps = maxSessions;
+    this.localCachedMaps = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Gets the Redis hash for the current session.
+   *
+   * @param request the HTTP servlet request
+   * @return the Redis hash
+   */
   private RMap<Object, Object> getRedisHashForUser(final HttpServletRequest request) {
-    return this.client.getMap("session:%s".formatted(request.getSession().getId()));
+    if (this.localCachedMaps != null) {
+      return this.getLocalCachedMap(this.getRedisHashName(request));
+    }
+    return this.codec != null
+        ? this.client.getMap(this.getRedisHashName(request), this.codec)
+        : this.client.getMap(this.getRedisHashName(request));
+  }
+
+  /**
+   * Gets the local cached map for the given session hash, and creates it if needed. Creating a map (subscribing) and
+   * destroying evicted maps (unsubscribing) involve Redis, so this is done without holding the lock for the maps.
+   *
+   * @param name the name of the Redis hash
+   * @return a local cached map
+   */
+  private RLocalCachedMap<Object, Object> getLocalCachedMap(final String name) {
+    synchronized (this.localCachedMaps) {
+      final RLocalCachedMap<Object, Object> map = this.localCachedMaps.get(name);
+      if (map != null) {
+        return map;
+      }
+    }
+    final RLocalCachedMap<Object, Object> created = this.createLocalCachedMap(name);
+    final List<RLocalCachedMap<Object, Object>> destroy = new ArrayList<>();
+    final RLocalCachedMap<Object, Object> map;
+    synchronized (this.localCachedMaps) {
+      final RLocalCachedMap<Object, Object> existing = this.localCachedMaps.putIfAbsent(name, created);
+      if (existing != null) {
+        // Created by another thread in the meantime ...
+        destroy.add(created);
+        map = existing;
+      }
+      else {
+        map = created;
+        final Iterator<RLocalCachedMap<Object, Object>> eldest = this.localCachedMaps.values().iterator();
+        while (this.localCachedMaps.size() > this.maxLocalCachedMaps) {
+          destroy.add(eldest.next());
+          eldest.remove();
+        }
+      }
+    }
+    destroy.forEach(RLocalCachedMap::destroy);
+    return map;
+  }
+
+  /**
+   * Creates a local cached map for the given session hash.
+   *
+   * @param name the name of the Redis hash
+   * @return a local cached map
+   */
+  private RLocalCachedMap<Object, Object> createLocalCachedMap(final String name) {
+    final LocalCachedMapOptions<Object, Object> options = LocalCachedMapOptions.<Object, Object> name(name)
+        .cacheSize(BankIdSessionAttributeKeys.BANKID_VOLATILE_ATTRIBUTES.size() + 2)
+        .timeToLive(this.nearCacheTimeToLive)
+        .evictionPolicy(LocalCachedMapOptions.EvictionPolicy.LRU)
+        .syncStrategy(LocalCachedMapOptions.SyncStrategy.INVALIDATE)
+        .reconnectionStrategy(LocalCachedMapOptions.ReconnectionStrategy.CLEAR);
+    if (this.codec != null) {
+      options.codec(this.codec);
+    }
+    return this.client.getLocalCachedMap(options);
+  }
+
+  /**
+   * Gets the name of the Redis hash for the current session.
+   *
+   * @param request the HTTP servlet request
+   * @return the name of the Redis hash
+   */
+  private String getRedisHashName(final HttpServletRequest request) {
+    return "session:%s".formatted(request.getSession().getId());
   }
 
 }
@@ -20,6 +20,11 @@ import jakarta.servlet.http.HttpServletRequest;
 /**
  * Implements the {@link SessionDao} interface using the session extracted from the {@link HttpServletRequest}.
  * If using Spring session the session objects will be distributed.
+ * <p>
+ * With Spring Session Redis, the objects are stored as attributes in the Spring Session hash. Changed attributes are
+ * written, together with the session expiration time, when Spring Session saves the session (at the end of the
+ * request, unless the flush mode is "immediate").
+ * </p>
  *
  * @author Martin Lindström
  * @author Felix Hellman
@@ -15,6 +15,9 @@
  */
 package se.swedenconnect.bankid.idp.authn.session;
 
+import java.util.Collection;
+import java.util.Map;
+
 import jakarta.servlet.http.HttpServletRequest;
 
 /**
@@ -52,4 +55,22 @@ public interface SessionDao {
    * @param request the HTTP servlet request
    */
   void remove(final String key, final HttpServletRequest request);
+
+  /**
+   * Writes the supplied objects and removes the objects identified by {@code removedKeys} in one operation.
+   * <p>
+   * The default implementation invokes {@link #write(String, Object, HttpServletRequest)} and
+   * {@link #remove(String, HttpServletRequest)} for each key. Implementations using a remote store should override this
+   * method and perform the update in one round-trip.
+   * </p>
+   *
+   * @param values the objects to write (key and object)
+   * @param removedKeys the keys of the objects to remove
+   * @param request the HTTP servlet request
+   */
+  default void update(
+      final Map<String, Object> values, final Collection<String> removedKeys, final HttpServletRequest request) {
+    values.forEach((key, value) -> this.write(key, value, request));
+    removedKeys.forEach(key -> this.remove(key, request));
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * A {@link SessionDao} that stores the BankID session objects as attributes in the Spring Session hash (see
+ * {@code bankid.session.single-hash}).
+ * <p>
+ * The objects are set in the servlet session, so that they are visible for the rest of the request. Since Spring
+ * Session (with the "on save" flush mode) only writes changes at the end of the request, each update is also saved
+ * directly using the {@link SessionRepository}. All objects of an update are saved together, i.e., one write of the
+ * changed attributes and the expiration time, no matter how many objects are updated. This way long-lived requests
+ * (the status stream) and concurrent requests for the same session see the changes directly.
+ * </p>
+ *
+ * @author Martin Lindström
+ */
+public class SpringSessionDao extends ServletSessionDao {
+
+  /** The Spring Session repository. */
+  private final SessionRepository<? extends Session> sessionRepository;
+
+  /**
+   * Constructor.
+   *
+   * @param sessionRepository the Spring Session repository
+   */
+  public SpringSessionDao(final SessionRepository<? extends Session> sessionRepository) {
+    this.sessionRepository = Objects.requireNonNull(sessionRepository, "sessionRepository must not be null");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(final String key, final Object value, final HttpServletRequest request) {
+    this.update(Collections.singletonMap(key, value), List.of(), request);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void remove(final String key, final HttpServletRequest request) {
+    this.update(Map.of(), List.of(key), request);
+  }
+
+  /**
+   * Sets and removes the objects in the servlet session, and saves all changes to the Spring Session repository in one
+   * operation.
+   */
+  @Override
+  public void update(
+      final Map<String, Object> values, final Collection<String> removedKeys, final HttpServletRequest request) {
+    if (values.isEmpty() && removedKeys.isEmpty()) {
+      return;
+    }
+    final HttpSession httpSession = request.getSession();
+    values.forEach(httpSession::setAttribute);
+    removedKeys.forEach(httpSession::removeAttribute);
+    save(this.sessionRepository, httpSession.getId(), values, removedKeys);
+  }
+
+  /**
+   * Applies the changes to the stored session and saves it. If the session has not been stored yet, it is saved by
+   * Spring Session at the end of the request.
+   *
+   * @param repository the session repository
+   * @param id the session id
+   * @param values the objects to write
+   * @param removedKeys the keys of the objects to remove
+   */
+  private static <S extends Session> void save(final SessionRepository<S> repository, final String id,
+      final Map<String, Object> values, final Collection<String> removedKeys) {
+    final S session = repository.findById(id);
+    if (session == null) {
+      return;
+    }
+    values.forEach(session::setAttribute);
+    removedKeys.forEach(session::removeAttribute);
+    repository.save(session);
+  }
+
+}
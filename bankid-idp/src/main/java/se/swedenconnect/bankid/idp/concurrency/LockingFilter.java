@@ -69,10 +69,7 @@ public class LockingFilter extends OncePerRequestFilter {
       final FilterChain filterChain) throws ServletException, IOException {
 
     if (request.getServletPath().contains(POLLING_PATH)) {
-      final HttpSession session = request.getSession();
-      // Keyformat is lock:/path/:sessionID
-      final String key = "lock:%s:%s".formatted(POLLING_PATH, session.getId());
-      final TryLock lock = this.locks.get(key);
+      final TryLock lock = this.locks.get(getLockKey(request.getSession()));
       if (lock.tryLock()) {
         try {
           filterChain.doFilter(request, response);
@@ -102,6 +99,17 @@ public class LockingFilter extends OncePerRequestFilter {
     }
   }
 
+  /**
+   * Gets the key for the per-session polling lock. This lock is also used by the status stream.
+   *
+   * @param session the HTTP session
+   * @return the lock key
+   */
+  public static String getLockKey(final HttpSession session) {
+    // Keyformat is lock:/path/:sessionID
+    return "lock:%s:%s".formatted(POLLING_PATH, session.getId());
+  }
+
   /**
    * Sets header flags and writes error message to be sent to user.
    *
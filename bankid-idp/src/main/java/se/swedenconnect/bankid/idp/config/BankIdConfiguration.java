@@ -16,12 +16,17 @@
 package se.swedenconnect.bankid.idp.config;
 
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.security.autoconfigure.actuate.web.servlet.EndpointRequest;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
@@ -30,6 +35,10 @@ import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
 import se.swedenconnect.bankid.idp.authn.BankIdAttributeProducer;
 import se.swedenconnect.bankid.idp.authn.BankIdAuthenticationProvider;
 import se.swedenconnect.bankid.idp.authn.api.UiInformationProvider;
@@ -37,13 +46,18 @@ import se.swedenconnect.bankid.idp.authn.error.ErrorhandlerFilter;
 import se.swedenconnect.bankid.idp.authn.events.BankIdEventPublisher;
 import se.swedenconnect.bankid.idp.authn.service.BankIdRequestFactory;
 import se.swedenconnect.bankid.idp.authn.service.BankIdService;
+import se.swedenconnect.bankid.idp.authn.service.CollectCoalescer;
+import se.swedenconnect.bankid.idp.authn.service.CollectPacingPolicy;
+import se.swedenconnect.bankid.idp.authn.service.CollectScheduler;
+import se.swedenconnect.bankid.idp.authn.service.OperationResilience;
+import se.swedenconnect.bankid.idp.authn.service.RelyingPartyResilience;
 import se.swedenconnect.bankid.idp.config.BankIdConfigurationProperties.RelyingPartyConfiguration;
 import se.swedenconnect.bankid.idp.rp.DefaultRelyingPartyRepository;
 import se.swedenconnect.bankid.idp.rp.RelyingPartyData;
 import se.swedenconnect.bankid.idp.rp.RelyingPartyRepository;
-import se.swedenconnect.bankid.rpapi.service.BankIDClient;
 import se.swedenconnect.bankid.rpapi.service.QRGenerator;
 import se.swedenconnect.bankid.rpapi.service.impl.BankIDClientImpl;
+import se.swedenconnect.bankid.rpapi.service.impl.SvgQRGenerator;
 import se.swedenconnect.bankid.rpapi.service.impl.ZxingQRGenerator;
 import se.swedenconnect.bankid.rpapi.support.WebClientFactoryBean;
 import se.swedenconnect.security.credential.factory.PkiCredentialFactory;
@@ -53,6 +67,8 @@ import se.swedenconnect.spring.saml.idp.extensions.SignatureMessagePreprocessor;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -146,29 +162,125 @@ public class BankIdConfiguration {
   /**
    * Creates the {@link QRGenerator} to use when generating QR code images.
    *
+   * @param preGenerationExecutor the executor used if QR codes are pre-generated
    * @return a {@link QRGenerator}
    */
   @Bean
-  QRGenerator qrGenerator() {
-    final ZxingQRGenerator generator = new ZxingQRGenerator();
+  QRGenerator qrGenerator(
+      @Qualifier("bankIdQrPreGenerationExecutor") final ObjectProvider<Executor> preGenerationExecutor) {
+    final QRGenerator.ImageFormat imageFormat = this.properties.getUi().getQrCode().getImageFormat();
+    final ZxingQRGenerator generator = QRGenerator.ImageFormat.SVG.equals(imageFormat)
+        ? new SvgQRGenerator()
+        : new ZxingQRGenerator();
     generator.setDefaultSize(this.properties.getUi().getQrCode().getSize());
-    generator.setDefaultImageFormat(this.properties.getUi().getQrCode().getImageFormat());
+    generator.setDefaultImageFormat(imageFormat);
+    final int preGenerateFrames = this.properties.getUi().getQrCode().getPreGenerateFrames();
+    final Executor executor = preGenerationExecutor.getIfAvailable();
+    if (preGenerateFrames > 0 && executor != null) {
+      generator.setPreGenerateFrames(preGenerateFrames);
+      generator.setPreGenerationExecutor(executor);
+    }
     return generator;
   }
 
+  /**
+   * Gets the executor used to pre-generate QR codes. Created if {@code bankid.ui.qr-code.pre-generate-frames} is
+   * greater than 0.
+   * <p>
+   * The executor is bounded, both in threads and queued tasks. Pre-generation is a best effort, so tasks that do not
+   * fit are rejected (and the frames are generated when requested instead).
+   * </p>
+   *
+   * @return a {@link ThreadPoolTaskExecutor}
+   */
+  @Bean
+  @ConditionalOnExpression("${bankid.ui.qr-code.pre-generate-frames:0} > 0")
+  ThreadPoolTaskExecutor bankIdQrPreGenerationExecutor() {
+    final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("bankid-qr-");
+    executor.setCorePoolSize(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    executor.setMaxPoolSize(executor.getCorePoolSize());
+    executor.setQueueCapacity(1000);
+    executor.setAllowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Gets the connection provider (pool) that is shared by all BankID clients.
+   *
+   * @return a {@link ConnectionProvider}
+   */
+  @Bean(destroyMethod = "dispose")
+  ConnectionProvider bankIdConnectionProvider() {
+    final BankIdConfigurationProperties.ClientConfiguration.PoolConfiguration pool =
+        this.properties.getClient().getPool();
+    return ConnectionProvider.builder("bankid-rp-api")
+        .maxConnections(pool.getMaxConnections())
+        .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+        .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+        .maxIdleTime(pool.getMaxIdleTime())
+        .maxLifeTime(pool.getMaxLifeTime())
+        .evictInBackground(pool.getEvictionInterval())
+        .metrics(pool.isMetricsEnabled())
+        .build();
+  }
+
+  /**
+   * Gets the event loop resources that are shared by all BankID clients.
+   *
+   * @return a {@link LoopResources}
+   */
+  @Bean(destroyMethod = "dispose")
+  LoopResources bankIdLoopResources() {
+    return LoopResources.create("bankid-rp-api", this.properties.getClient().getEventLoopThreads(), true);
+  }
+
+  /**
+   * Gets a bounded scheduler on which BankID responses are processed. Created if
+   * {@code bankid.client.executor.type} is {@code bounded}.
+   *
+   * @return a {@link Scheduler}
+   */
+  @Bean(destroyMethod = "dispose")
+  @ConditionalOnProperty(value = "bankid.client.executor.type", havingValue = "bounded")
+  Scheduler bankIdResponseScheduler() {
+    final BankIdConfigurationProperties.ClientConfiguration.ExecutorConfiguration executor =
+        this.properties.getClient().getExecutor();
+    return Schedulers.newBoundedElastic(executor.getMaxThreads(), executor.getQueueSize(), "bankid-response");
+  }
+
+  /**
+   * Gets a scheduler, backed by virtual threads, on which BankID responses are processed. Created if
+   * {@code bankid.client.executor.type} is {@code virtual}.
+   *
+   * @return a {@link Scheduler}
+   */
+  @Bean(destroyMethod = "dispose")
+  @ConditionalOnProperty(value = "bankid.client.executor.type", havingValue = "virtual")
+  Scheduler bankIdVirtualResponseScheduler() {
+    return Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "bankid-response");
+  }
+
   /**
    * Gets the bankIdWebClientFactory bean
    *
+   * @param connectionProvider the shared connection provider
+   * @param loopResources the shared event loop resources
    * @return lambda function to create webclient from RelyingParty
    */
-
   @Bean
-  Function<RelyingPartyConfiguration, WebClient> bankIdWebClientFactory() {
+  Function<RelyingPartyConfiguration, WebClient> bankIdWebClientFactory(final ConnectionProvider connectionProvider,
+      final LoopResources loopResources) {
     return rp -> {
       try {
         final WebClientFactoryBean webClientFactory =
             new WebClientFactoryBean(this.properties.getServiceUrl(), this.properties.getServerRootCertificate(),
                 this.pkiCredentialFactory.createCredential(rp.getCredential()));
+        webClientFactory.setConnectionProvider(connectionProvider);
+        webClientFactory.setLoopResources(loopResources);
+        webClientFactory.setHttp2Enabled(this.properties.getClient().isHttp2Enabled());
+        webClientFactory.setConnectTimeout(this.properties.getClient().getConnectTimeout());
+        webClientFactory.setResponseTimeout(this.properties.getClient().getResponseTimeout());
         webClientFactory.afterPropertiesSet();
         return webClientFactory.createInstance();
       }
@@ -183,11 +295,13 @@ public class BankIdConfiguration {
    *
    * @param qrGenerator the {@link QRGenerator} bean
    * @param webClientFactory the WebClientMapper bean (function to create webclient from RelyingParty)
+   * @param responseScheduler the scheduler on which BankID responses are processed (optional)
    * @return a {@link RelyingPartyRepository}
    */
   @Bean
   RelyingPartyRepository relyingPartyRepository(final QRGenerator qrGenerator,
-      final Function<RelyingPartyConfiguration, WebClient> webClientFactory) {
+      final Function<RelyingPartyConfiguration, WebClient> webClientFactory,
+      final ObjectProvider<Scheduler> responseScheduler) {
 
     final List<RelyingPartyData> relyingParties = new ArrayList<>();
     for (final RelyingPartyConfiguration rp : this.properties.getRelyingParties()) {
@@ -203,7 +317,14 @@ public class BankIdConfiguration {
         }
       }
 
-      final BankIDClient client = new BankIDClientImpl(rp.getId(), webClientFactory.apply(rp), qrGenerator);
+      final BankIDClientImpl client = new BankIDClientImpl(rp.getId(), webClientFactory.apply(rp), qrGenerator);
+      final BankIdConfigurationProperties.ClientConfiguration.TimeoutConfiguration timeout =
+          this.properties.getClient().getTimeout();
+      client.setAuthTimeout(timeout.getAuth());
+      client.setSignTimeout(timeout.getSign());
+      client.setCollectTimeout(timeout.getCollect());
+      client.setCancelTimeout(timeout.getCancel());
+      responseScheduler.ifAvailable(client::setResponseScheduler);
 
       relyingParties.add(new RelyingPartyData(client, rp.getEntityIds(),
           rp.getUserMessage().getLoginText(), rp.getUserMessage().getFallbackSignText(),
@@ -271,8 +392,49 @@ public class BankIdConfiguration {
 
   @Bean
   BankIdService bankIdService(final BankIdEventPublisher publisher, final CircuitBreaker circuitBreaker,
-      final BankIdRequestFactory factory, final BankIdConfigurationProperties properties) {
-    return new BankIdService(publisher, circuitBreaker, factory, properties.getStartRetryDuration());
+      final BankIdRequestFactory factory, final BankIdConfigurationProperties properties,
+      final ObjectProvider<CollectScheduler> collectScheduler, final ObjectProvider<CollectCoalescer> collectCoalescer,
+      final ObjectProvider<RelyingPartyResilience> relyingPartyResilience,
+      final ObjectProvider<OperationResilience> operationResilience) {
+    final BankIdService service =
+        new BankIdService(publisher, circuitBreaker, factory, properties.getStartRetryDuration());
+    collectScheduler.ifAvailable(service::setCollectScheduler);
+    collectCoalescer.ifAvailable(service::setCollectCoalescer);
+    relyingPartyResilience.ifAvailable(service::setRelyingPartyResilience);
+    operationResilience.ifAvailable(service::setOperationResilience);
+    return service;
+  }
+
+  @Bean
+  @ConditionalOnProperty(value = "bankid.collect.coalescing-enabled", havingValue = "true", matchIfMissing = true)
+  CollectCoalescer collectCoalescer(final BankIdConfigurationProperties properties,
+      final ObjectProvider<CollectPacingPolicy> pacingPolicy) {
+    final CollectCoalescer coalescer = new CollectCoalescer(properties.getCollect().getReuseWindow());
+    pacingPolicy.ifAvailable(coalescer::setPacingPolicy);
+    return coalescer;
+  }
+
+  @Bean
+  @ConditionalOnProperty(value = "bankid.collect.pacing.enabled", havingValue = "true")
+  CollectPacingPolicy collectPacingPolicy(final BankIdConfigurationProperties properties) {
+    final BankIdConfigurationProperties.CollectConfiguration.PacingConfiguration pacing =
+        properties.getCollect().getPacing();
+    final CollectPacingPolicy policy = new CollectPacingPolicy();
+    policy.setStatusChangeInterval(pacing.getStatusChangeInterval());
+    policy.setWaitingInterval(pacing.getWaitingInterval());
+    policy.setUserActionInterval(pacing.getUserActionInterval());
+    policy.setErrorBackoff(pacing.getErrorBackoff());
+    return policy;
+  }
+
+  @Bean
+  @ConditionalOnProperty(value = "bankid.collect.scheduler-enabled", havingValue = "true")
+  CollectScheduler collectScheduler(final BankIdConfigurationProperties properties,
+      final ObjectProvider<CollectPacingPolicy> pacingPolicy) {
+    final CollectScheduler scheduler =
+        new CollectScheduler(properties.getCollect().getInterval(), properties.getCollect().getAbandonTimeout());
+    pacingPolicy.ifAvailable(scheduler::setPacingPolicy);
+    return scheduler;
   }
 
 }
@@ -15,6 +15,7 @@
  */
 package se.swedenconnect.bankid.idp.config;
 
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -25,9 +26,16 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import reactor.netty.resources.LoopResources;
 import se.swedenconnect.bankid.idp.audit.AuditRepositoryConfiguration;
 import se.swedenconnect.bankid.idp.authn.BankIdAuthenticationController;
+import se.swedenconnect.bankid.idp.authn.service.CollectCoalescer;
+import se.swedenconnect.bankid.idp.authn.service.CollectPacingPolicy;
+import se.swedenconnect.bankid.idp.authn.service.CollectScheduler;
+import se.swedenconnect.bankid.idp.authn.service.OperationResilience;
+import se.swedenconnect.bankid.idp.authn.service.RelyingPartyResilience;
 import se.swedenconnect.bankid.idp.rp.RelyingPartyUiInfo;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIDClientImpl;
 import se.swedenconnect.bankid.rpapi.support.WebClientFactoryBean;
 import se.swedenconnect.opensaml.sweid.saml2.authn.LevelOfAssuranceUris;
 import se.swedenconnect.security.credential.factory.PkiCredentialConfigurationProperties;
@@ -113,6 +121,27 @@ public class BankIdConfigurationProperties implements InitializingBean {
   @Getter
   private final SessionConfiguration session = new SessionConfiguration();
 
+  /**
+   * Configuration for how BankID orders are collected.
+   */
+  @NestedConfigurationProperty
+  @Getter
+  private final CollectConfiguration collect = new CollectConfiguration();
+
+  /**
+   * Configuration for the HTTP client(s) used to communicate with the BankID server.
+   */
+  @NestedConfigurationProperty
+  @Getter
+  private final ClientConfiguration client = new ClientConfiguration();
+
+  /**
+   * Resilience configuration for the calls made to the BankID server.
+   */
+  @NestedConfigurationProperty
+  @Getter
+  private final BankIdResilienceConfiguration resilience = new BankIdResilienceConfiguration();
+
   /**
    * Configuration for audit support.
    */
@@ -160,6 +189,14 @@ public class BankIdConfigurationProperties implements InitializingBean {
     }
     this.authn.afterPropertiesSet();
     this.health.afterPropertiesSet();
+    this.session.afterPropertiesSet();
+    this.collect.afterPropertiesSet();
+    this.client.afterPropertiesSet();
+    if (this.resilience.getCircuitBreaker().getSlowCallDurationThreshold() == null) {
+      this.resilience.getCircuitBreaker().setSlowCallDurationThreshold(
+          this.client.getTimeout().getCollect().multipliedBy(3).dividedBy(5));
+    }
+    this.resilience.afterPropertiesSet();
     this.audit.afterPropertiesSet();
     this.ui.afterPropertiesSet();
 
@@ -358,7 +395,7 @@ public class BankIdConfigurationProperties implements InitializingBean {
   /**
    * Session handling configuration.
    */
-  public static class SessionConfiguration {
+  public static class SessionConfiguration implements InitializingBean {
 
     /**
      * The session module to use. Supported values are "memory" and "redis". Set to other value if you extend the BankID
@@ -368,6 +405,833 @@ public class BankIdConfigurationProperties implements InitializingBean {
     @Setter
     private String module;
 
+    /**
+     * Whether BankID session objects should be stored as attributes in the Spring Session hash instead of in a
+     * separate Redis hash per session. This gives one key per user and one expiration time managed by Spring Session.
+     * Requires that {@code spring.session.data.redis.flush-mode} is {@code on-save} (the default). The caching and
+     * codec settings below are not applicable if this setting is enabled. The default is {@code false}.
+     */
+    @Getter
+    @Setter
+    private boolean singleHash = false;
+
+    /**
+     * Whether BankID session objects read from Redis should be cached for the duration of the current HTTP request.
+     * The default is {@code true}.
+     */
+    @Getter
+    @Setter
+    private boolean requestCacheEnabled = true;
+
+    /**
+     * Whether the BankID session state should be stored in Redis using a compact binary encoding (instead of the
+     * default Redis codec). Values stored using the default codec can still be read, but instances that have not
+     * enabled the codec can not read the compact values. Therefore, it should be enabled once all instances of a
+     * cluster are upgraded. The default is {@code false}.
+     */
+    @Getter
+    @Setter
+    private boolean compactCodecEnabled = false;
+
+    /**
+     * Near-cache (client side caching) configuration for BankID session objects stored in Redis.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final NearCacheConfiguration nearCache = new NearCacheConfiguration();
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      this.nearCache.afterPropertiesSet();
+    }
+
+    /**
+     * Near-cache configuration. If enabled, the Redis hashes holding the BankID session objects are accessed as
+     * Redisson local cached maps, and updates made by other IdP instances are propagated using invalidation messages.
+     */
+    public static class NearCacheConfiguration implements InitializingBean {
+
+      /**
+       * Whether the near-cache is enabled. The default is {@code false}.
+       */
+      @Getter
+      @Setter
+      private boolean enabled = false;
+
+      /**
+       * The maximum number of sessions for which near-cache entries are kept. The default is 10000.
+       */
+      @Getter
+      @Setter
+      private int maxSessions = 10000;
+
+      /**
+       * The time to live for near-cache entries. The default is 5 minutes.
+       */
+      @Getter
+      @Setter
+      private Duration timeToLive;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        Assert.isTrue(this.maxSessions > 0, "bankid.session.near-cache.max-sessions must be greater than 0");
+        if (this.timeToLive == null) {
+          this.timeToLive = Duration.ofMinutes(5);
+        }
+        Assert.isTrue(!this.timeToLive.isNegative() && !this.timeToLive.isZero(),
+            "bankid.session.near-cache.time-to-live must be positive");
+      }
+
+    }
+
+  }
+
+  /**
+   * Configuration for collecting BankID orders.
+   */
+  public static class CollectConfiguration implements InitializingBean {
+
+    /**
+     * Whether the server side collect scheduler should be used. If enabled, BankID collect calls are made at a fixed
+     * pace by the IdP, and browser polls are served from the latest collected result. If disabled, each browser poll
+     * results in a collect call. The default is {@code false}.
+     */
+    @Getter
+    @Setter
+    private boolean schedulerEnabled = false;
+
+    /**
+     * The interval between two collect calls for the same order when the scheduler is used. The default is 2 seconds
+     * (which is what BankID recommends).
+     */
+    @Getter
+    @Setter
+    private Duration interval;
+
+    /**
+     * If an order has not been polled for during this duration it is dropped by the scheduler. The default is 30
+     * seconds.
+     */
+    @Getter
+    @Setter
+    private Duration abandonTimeout;
+
+    /**
+     * Whether concurrent collect calls for the same order (for example from several browser tabs) should share one
+     * call to the BankID server. Not used if the scheduler is enabled. The default is {@code true}.
+     */
+    @Getter
+    @Setter
+    private boolean coalescingEnabled = true;
+
+    /**
+     * If coalescing is enabled, a collect result is reused for this duration after it was received. The default is 0,
+     * meaning that only ongoing calls are shared.
+     */
+    @Getter
+    @Setter
+    private Duration reuseWindow;
+
+    /**
+     * Configuration for adaptive pacing of collect calls.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final PacingConfiguration pacing = new PacingConfiguration();
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      if (this.reuseWindow == null) {
+        this.reuseWindow = CollectCoalescer.DEFAULT_REUSE_WINDOW;
+      }
+      Assert.isTrue(!this.reuseWindow.isNegative(), "bankid.collect.reuse-window must not be negative");
+      if (this.interval == null) {
+        this.interval = CollectScheduler.DEFAULT_COLLECT_INTERVAL;
+      }
+      if (this.abandonTimeout == null) {
+        this.abandonTimeout = CollectScheduler.DEFAULT_ABANDON_TIMEOUT;
+      }
+      Assert.isTrue(!this.interval.isNegative() && !this.interval.isZero(), "bankid.collect.interval must be positive");
+      this.pacing.afterPropertiesSet();
+    }
+
+    /**
+     * Configuration for adaptive pacing of collect calls. If enabled, the minimum interval between two collect calls
+     * for an order depends on the progress of the order. For the scheduler, the pacing intervals replace the fixed
+     * collect interval. Otherwise, the collect result is reused (instead of calling BankID) until the pacing interval
+     * has passed.
+     */
+    public static class PacingConfiguration implements InitializingBean {
+
+      /**
+       * Whether adaptive pacing is enabled. The default is {@code false}.
+       */
+      @Getter
+      @Setter
+      private boolean enabled = false;
+
+      /**
+       * The interval used right after the progress status of an order has changed (for example just after the user
+       * scanned the QR code). The default is 1 second.
+       */
+      @Getter
+      @Setter
+      private Duration statusChangeInterval;
+
+      /**
+       * The interval used while the order has not been received by a BankID client (outstandingTransaction and
+       * noClient). The default is 2 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration waitingInterval;
+
+      /**
+       * The interval used while the user is handling the order in the BankID app (started, userMrtd and userSign). The
+       * default is 3 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration userActionInterval;
+
+      /**
+       * The back-off used when BankID reports maintenance or an internal error. The default is 5 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration errorBackoff;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        if (this.statusChangeInterval == null) {
+          this.statusChangeInterval = CollectPacingPolicy.DEFAULT_STATUS_CHANGE_INTERVAL;
+        }
+        if (this.waitingInterval == null) {
+          this.waitingInterval = CollectPacingPolicy.DEFAULT_WAITING_INTERVAL;
+        }
+        if (this.userActionInterval == null) {
+          this.userActionInterval = CollectPacingPolicy.DEFAULT_USER_ACTION_INTERVAL;
+        }
+        if (this.errorBackoff == null) {
+          this.errorBackoff = CollectPacingPolicy.DEFAULT_ERROR_BACKOFF;
+        }
+      }
+
+    }
+
+  }
+
+  /**
+   * Configuration for the HTTP client(s) used to communicate with the BankID server.
+   */
+  public static class ClientConfiguration implements InitializingBean {
+
+    /**
+     * The number of event loop threads shared by all BankID clients. The default is the Reactor Netty default (the
+     * number of available processors, but at least 4).
+     */
+    @Getter
+    @Setter
+    private Integer eventLoopThreads;
+
+    /**
+     * Whether HTTP/2 should be offered to the BankID server. If the server does not select HTTP/2 during the TLS
+     * handshake, HTTP/1.1 is used. The default is {@code false}.
+     */
+    @Getter
+    @Setter
+    private boolean http2Enabled = false;
+
+    /**
+     * The timeout for establishing a connection to the BankID server. The default is 5 seconds.
+     */
+    @Getter
+    @Setter
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * The maximum time to wait for a response from the BankID server after a request has been sent. The default is 10
+     * seconds.
+     */
+    @Getter
+    @Setter
+    private Duration responseTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Timeouts for the individual BankID operations.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final TimeoutConfiguration timeout = new TimeoutConfiguration();
+
+    /**
+     * Configuration for the threads on which BankID responses are processed.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final ExecutorConfiguration executor = new ExecutorConfiguration();
+
+    /**
+     * Connection pool configuration. The pool is shared by all relying party clients.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final PoolConfiguration pool = new PoolConfiguration();
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      if (this.eventLoopThreads == null) {
+        this.eventLoopThreads = LoopResources.DEFAULT_IO_WORKER_COUNT;
+      }
+      Assert.isTrue(this.eventLoopThreads > 0, "bankid.client.event-loop-threads must be greater than 0");
+      Assert.notNull(this.connectTimeout, "bankid.client.connect-timeout must be assigned");
+      Assert.notNull(this.responseTimeout, "bankid.client.response-timeout must be assigned");
+      this.timeout.afterPropertiesSet();
+      this.executor.afterPropertiesSet();
+      this.pool.afterPropertiesSet();
+    }
+
+    /**
+     * Configuration for the threads on which BankID responses are processed.
+     */
+    public static class ExecutorConfiguration implements InitializingBean {
+
+      /**
+       * The executor type. The default is {@link ExecutorType#EVENT_LOOP}.
+       */
+      @Getter
+      @Setter
+      private ExecutorType type = ExecutorType.EVENT_LOOP;
+
+      /**
+       * The maximum number of threads for the {@link ExecutorType#BOUNDED} executor. The default is 10 times the number
+       * of available processors.
+       */
+      @Getter
+      @Setter
+      private Integer maxThreads;
+
+      /**
+       * The maximum number of tasks that may be queued when all threads of the {@link ExecutorType#BOUNDED} executor
+       * are busy. The default is 1000.
+       */
+      @Getter
+      @Setter
+      private int queueSize = 1000;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        Assert.notNull(this.type, "bankid.client.executor.type must be assigned");
+        if (this.maxThreads == null) {
+          this.maxThreads = 10 * Runtime.getRuntime().availableProcessors();
+        }
+        Assert.isTrue(this.maxThreads > 0, "bankid.client.executor.max-threads must be greater than 0");
+        Assert.isTrue(this.queueSize > 0, "bankid.client.executor.queue-size must be greater than 0");
+      }
+
+      /**
+       * Executor types.
+       */
+      public enum ExecutorType {
+
+        /** Responses are processed on the HTTP client event loop threads. No additional threads are created. */
+        EVENT_LOOP,
+
+        /** Responses are processed by a bounded pool of threads. */
+        BOUNDED,
+
+        /** Each response is processed on a new virtual thread. */
+        VIRTUAL
+      }
+
+    }
+
+    /**
+     * Timeouts for the individual BankID operations. The timeout covers the complete call, including waiting for a
+     * pooled connection.
+     */
+    public static class TimeoutConfiguration implements InitializingBean {
+
+      /**
+       * The timeout for the auth call. The default is 10 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration auth;
+
+      /**
+       * The timeout for the sign call. The default is 10 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration sign;
+
+      /**
+       * The timeout for the collect call. The default is 5 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration collect;
+
+      /**
+       * The timeout for the cancel call. The default is 5 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration cancel;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        if (this.auth == null) {
+          this.auth = BankIDClientImpl.DEFAULT_ORDER_TIMEOUT;
+        }
+        if (this.sign == null) {
+          this.sign = BankIDClientImpl.DEFAULT_ORDER_TIMEOUT;
+        }
+        if (this.collect == null) {
+          this.collect = BankIDClientImpl.DEFAULT_COLLECT_TIMEOUT;
+        }
+        if (this.cancel == null) {
+          this.cancel = BankIDClientImpl.DEFAULT_COLLECT_TIMEOUT;
+        }
+      }
+
+    }
+
+    /**
+     * Connection pool configuration.
+     */
+    public static class PoolConfiguration implements InitializingBean {
+
+      /**
+       * The maximum number of connections (per BankID server and relying party certificate). The default is 50.
+       */
+      @Getter
+      @Setter
+      private int maxConnections = 50;
+
+      /**
+       * The maximum number of requests that may wait for a connection when all connections are in use. A value of -1
+       * means no limit. The default is 500.
+       */
+      @Getter
+      @Setter
+      private int pendingAcquireMaxCount = 500;
+
+      /**
+       * The maximum time a request waits for a connection from the pool. The default is 10 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+
+      /**
+       * The time after which an idle connection is closed. The default is 30 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration maxIdleTime = Duration.ofSeconds(30);
+
+      /**
+       * The maximum life time for a connection. The default is 5 minutes.
+       */
+      @Getter
+      @Setter
+      private Duration maxLifeTime = Duration.ofMinutes(5);
+
+      /**
+       * The interval for background eviction of idle and expired connections. Set to zero to only evict connections
+       * when they are acquired. The default is 30 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration evictionInterval = Duration.ofSeconds(30);
+
+      /**
+       * Whether connection pool metrics should be published to Micrometer. The default is {@code true}.
+       */
+      @Getter
+      @Setter
+      private boolean metricsEnabled = true;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        Assert.isTrue(this.maxConnections > 0, "bankid.client.pool.max-connections must be greater than 0");
+        Assert.isTrue(this.pendingAcquireMaxCount == -1 || this.pendingAcquireMaxCount > 0,
+            "bankid.client.pool.pending-acquire-max-count must be -1 or greater than 0");
+        Assert.notNull(this.pendingAcquireTimeout, "bankid.client.pool.pending-acquire-timeout must be assigned");
+        Assert.notNull(this.maxIdleTime, "bankid.client.pool.max-idle-time must be assigned");
+        Assert.notNull(this.maxLifeTime, "bankid.client.pool.max-life-time must be assigned");
+        Assert.notNull(this.evictionInterval, "bankid.client.pool.eviction-interval must be assigned");
+      }
+
+    }
+
+  }
+
+  /**
+   * Resilience configuration for the calls made to the BankID server.
+   */
+  public static class BankIdResilienceConfiguration implements InitializingBean {
+
+    /**
+     * Whether each relying party should have a circuit breaker and bulkhead of its own. If enabled, failures for one
+     * relying party (for example due to an expired RP certificate) do not open the circuit for other relying parties,
+     * and one relying party can not use up all connections to the BankID server. The default is {@code false}, meaning
+     * that one circuit breaker is shared by all relying parties.
+     */
+    @Getter
+    @Setter
+    private boolean perRelyingParty = false;
+
+    /**
+     * Circuit breaker configuration.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final CircuitBreakerConfiguration circuitBreaker = new CircuitBreakerConfiguration();
+
+    /**
+     * Bulkhead configuration. Only used if {@code per-relying-party} is enabled.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final BulkheadConfiguration bulkhead = new BulkheadConfiguration();
+
+    /**
+     * Rate limiter configuration.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final RateLimiterConfiguration rateLimiter = new RateLimiterConfiguration();
+
+    /**
+     * Retry configuration.
+     */
+    @NestedConfigurationProperty
+    @Getter
+    private final RetryConfiguration retry = new RetryConfiguration();
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterPropertiesSet() {
+      this.circuitBreaker.afterPropertiesSet();
+      this.bulkhead.afterPropertiesSet();
+      this.rateLimiter.afterPropertiesSet();
+      this.retry.afterPropertiesSet();
+    }
+
+    /**
+     * Configuration for the circuit breaker(s) protecting the calls made to the BankID server. If
+     * {@code per-relying-party} is enabled, the settings are used for each relying party circuit breaker.
+     */
+    public static class CircuitBreakerConfiguration implements InitializingBean {
+
+      /**
+       * The type of sliding window used to record the outcome of calls. With {@code time-based}, the calls made during
+       * the last {@code sliding-window-size} seconds are recorded. With {@code count-based}, the last
+       * {@code sliding-window-size} calls are recorded. The default is {@code time-based}.
+       */
+      @Getter
+      @Setter
+      private CircuitBreakerConfig.SlidingWindowType slidingWindowType =
+          CircuitBreakerConfig.SlidingWindowType.TIME_BASED;
+
+      /**
+       * The size of the sliding window (seconds for a time based window, and number of calls for a count based
+       * window). The default is 30.
+       */
+      @Getter
+      @Setter
+      private int slidingWindowSize = 30;
+
+      /**
+       * The minimum number of calls within the sliding window before the failure and slow call rates are calculated.
+       * The default is 20.
+       */
+      @Getter
+      @Setter
+      private int minimumNumberOfCalls = 20;
+
+      /**
+       * The failure rate (in percent) at which the circuit opens. The default is 50.
+       */
+      @Getter
+      @Setter
+      private float failureRateThreshold = 50;
+
+      /**
+       * Calls taking longer than this are recorded as slow. The default is 60% of the collect timeout
+       * ({@code bankid.client.timeout.collect}), i.e., 3 seconds for the default collect timeout, so that the circuit
+       * opens before timeouts pile up.
+       */
+      @Getter
+      @Setter
+      private Duration slowCallDurationThreshold;
+
+      /**
+       * The slow call rate (in percent) at which the circuit opens. The default is 80.
+       */
+      @Getter
+      @Setter
+      private float slowCallRateThreshold = 80;
+
+      /**
+       * The time the circuit stays open before it transitions to half-open. The default is 10 seconds.
+       */
+      @Getter
+      @Setter
+      private Duration waitDurationInOpenState;
+
+      /**
+       * The number of calls permitted when the circuit is half-open. The default is 10.
+       */
+      @Getter
+      @Setter
+      private int permittedNumberOfCallsInHalfOpenState = 10;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        Assert.notNull(this.slidingWindowType,
+            "bankid.resilience.circuit-breaker.sliding-window-type must be assigned");
+        Assert.isTrue(this.slidingWindowSize > 0,
+            "bankid.resilience.circuit-breaker.sliding-window-size must be greater than 0");
+        Assert.isTrue(this.minimumNumberOfCalls > 0,
+            "bankid.resilience.circuit-breaker.minimum-number-of-calls must be greater than 0");
+        Assert.isTrue(this.failureRateThreshold > 0 && this.failureRateThreshold <= 100,
+            "bankid.resilience.circuit-breaker.failure-rate-threshold must be in the range (0, 100]");
+        if (this.slowCallDurationThreshold == null) {
+          this.slowCallDurationThreshold = Duration.ofSeconds(3);
+        }
+        Assert.isTrue(!this.slowCallDurationThreshold.isNegative() && !this.slowCallDurationThreshold.isZero(),
+            "bankid.resilience.circuit-breaker.slow-call-duration-threshold must be positive");
+        Assert.isTrue(this.slowCallRateThreshold > 0 && this.slowCallRateThreshold <= 100,
+            "bankid.resilience.circuit-breaker.slow-call-rate-threshold must be in the range (0, 100]");
+        if (this.waitDurationInOpenState == null) {
+          this.waitDurationInOpenState = Duration.ofSeconds(10);
+        }
+        Assert.isTrue(!this.waitDurationInOpenState.isNegative() && !this.waitDurationInOpenState.isZero(),
+            "bankid.resilience.circuit-breaker.wait-duration-in-open-state must be positive");
+        Assert.isTrue(this.permittedNumberOfCallsInHalfOpenState > 0,
+            "bankid.resilience.circuit-breaker.permitted-number-of-calls-in-half-open-state must be greater than 0");
+      }
+
+    }
+
+    /**
+     * Configuration for the bulkhead that limits the number of concurrent BankID calls for a relying party.
+     */
+    public static class BulkheadConfiguration implements InitializingBean {
+
+      /**
+       * The maximum number of concurrent calls to the BankID server for one relying party. The default is 25.
+       */
+      @Getter
+      @Setter
+      private Integer maxConcurrentCalls;
+
+      /**
+       * The maximum time a call waits for a permit if the bulkhead is full. The default is 0, meaning that a call that
+       * does not get a permit fails directly (waiting would block the calling thread).
+       */
+      @Getter
+      @Setter
+      private Duration maxWaitDuration;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        if (this.maxConcurrentCalls == null) {
+          this.maxConcurrentCalls = RelyingPartyResilience.DEFAULT_MAX_CONCURRENT_CALLS;
+        }
+        Assert.isTrue(this.maxConcurrentCalls > 0,
+            "bankid.resilience.bulkhead.max-concurrent-calls must be greater than 0");
+        if (this.maxWaitDuration == null) {
+          this.maxWaitDuration = RelyingPartyResilience.DEFAULT_MAX_WAIT_DURATION;
+        }
+        Assert.isTrue(!this.maxWaitDuration.isNegative(),
+            "bankid.resilience.bulkhead.max-wait-duration must not be negative");
+      }
+
+    }
+
+    /**
+     * Configuration for the rate limiters that limit the number of calls made to the BankID server per operation. The
+     * limits are for all relying parties together.
+     */
+    public static class RateLimiterConfiguration implements InitializingBean {
+
+      /**
+       * Whether rate limiting is enabled. The default is {@code false}.
+       */
+      @Getter
+      @Setter
+      private boolean enabled = false;
+
+      /**
+       * The period after which the permits of the rate limiters are refreshed. The default is 1 second.
+       */
+      @Getter
+      @Setter
+      private Duration refreshPeriod;
+
+      /**
+       * The maximum time a call waits for a permit. A call that does not get a permit fails without calling the BankID
+       * server. The default is 500 milliseconds.
+       */
+      @Getter
+      @Setter
+      private Duration timeout;
+
+      /**
+       * The maximum number of auth calls per refresh period. The default is 50.
+       */
+      @Getter
+      @Setter
+      private int auth = 50;
+
+      /**
+       * The maximum number of sign calls per refresh period. The default is 50.
+       */
+      @Getter
+      @Setter
+      private int sign = 50;
+
+      /**
+       * The maximum number of collect calls per refresh period. The default is 200.
+       */
+      @Getter
+      @Setter
+      private int collect = 200;
+
+      /**
+       * The maximum number of cancel calls per refresh period. The default is 50.
+       */
+      @Getter
+      @Setter
+      private int cancel = 50;
+
+      /**
+       * Gets the limit for the given operation.
+       *
+       * @param operation the operation
+       * @return the maximum number of calls per refresh period
+       */
+      public int getLimit(final OperationResilience.Operation operation) {
+        return switch (operation) {
+          case AUTH -> this.auth;
+          case SIGN -> this.sign;
+          case COLLECT -> this.collect;
+          case CANCEL -> this.cancel;
+        };
+      }
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        if (this.refreshPeriod == null) {
+          this.refreshPeriod = Duration.ofSeconds(1);
+        }
+        Assert.isTrue(!this.refreshPeriod.isNegative() && !this.refreshPeriod.isZero(),
+            "bankid.resilience.rate-limiter.refresh-period must be positive");
+        if (this.timeout == null) {
+          this.timeout = Duration.ofMillis(500);
+        }
+        Assert.isTrue(!this.timeout.isNegative(), "bankid.resilience.rate-limiter.timeout must not be negative");
+        for (final OperationResilience.Operation operation : OperationResilience.Operation.values()) {
+          Assert.isTrue(this.getLimit(operation) > 0,
+              "bankid.resilience.rate-limiter." + operation.getName() + " must be greater than 0");
+        }
+      }
+
+    }
+
+    /**
+     * Configuration for retrying failed calls to the BankID server. Only transient errors (server errors, timeouts and
+     * maintenance) are retried, and only for idempotent operations (collect and cancel). Collect calls that timed out
+     * are not retried. The wait between two attempts grows exponentially and is randomized (jitter) so that retries from
+     * many sessions are spread out.
+     */
+    public static class RetryConfiguration implements InitializingBean {
+
+      /**
+       * Whether retries are enabled. Since all attempts are made within one poll, and the poll holds the per-session
+       * lock, the maximum number of attempts and the wait between them should be kept low. The default is
+       * {@code false}.
+       */
+      @Getter
+      @Setter
+      private boolean enabled = false;
+
+      /**
+       * The operations that should be retried. Only {@code collect} and {@code cancel} may be given. The default is
+       * both of them.
+       */
+      @Getter
+      @Setter
+      private List<OperationResilience.Operation> operations;
+
+      /**
+       * The maximum number of attempts (including the first call). The default is 3.
+       */
+      @Getter
+      @Setter
+      private int maxAttempts = 3;
+
+      /**
+       * The wait before the first retry. The default is 200 milliseconds.
+       */
+      @Getter
+      @Setter
+      private Duration initialInterval;
+
+      /**
+       * The multiplier for the wait between attempts. The default is 2.
+       */
+      @Getter
+      @Setter
+      private double multiplier = 2.0;
+
+      /**
+       * The randomization factor (jitter) for the wait between attempts. A factor of 0.5 means that the wait is
+       * randomized within +/- 50%. The default is 0.5.
+       */
+      @Getter
+      @Setter
+      private double randomizationFactor = 0.5;
+
+      /** {@inheritDoc} */
+      @Override
+      public void afterPropertiesSet() {
+        if (this.operations == null) {
+          this.operations = List.of(OperationResilience.Operation.COLLECT, OperationResilience.Operation.CANCEL);
+        }
+        for (final OperationResilience.Operation operation : this.operations) {
+          Assert.isTrue(operation.isIdempotent(),
+              "bankid.resilience.retry.operations must not contain " + operation.getName());
+        }
+        Assert.isTrue(this.maxAttempts > 0, "bankid.resilience.retry.max-attempts must be greater than 0");
+        if (this.initialInterval == null) {
+          this.initialInterval = Duration.ofMillis(200);
+        }
+        Assert.isTrue(!this.initialInterval.isNegative() && !this.initialInterval.isZero(),
+            "bankid.resilience.retry.initial-interval must be positive");
+        Assert.isTrue(this.multiplier >= 1.0, "bankid.resilience.retry.multiplier must be at least 1");
+        Assert.isTrue(this.randomizationFactor >= 0.0 && this.randomizationFactor < 1.0,
+            "bankid.resilience.retry.randomization-factor must be in the range [0, 1)");
+      }
+
+    }
+
   }
 
   /**
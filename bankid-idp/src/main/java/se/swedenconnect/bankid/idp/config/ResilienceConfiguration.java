@@ -15,16 +15,27 @@
  */
 package se.swedenconnect.bankid.idp.config;
 
-import java.time.Duration;
-
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
 import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRateLimiterMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
 import io.micrometer.core.instrument.MeterRegistry;
+import se.swedenconnect.bankid.idp.authn.service.OperationResilience;
+import se.swedenconnect.bankid.idp.authn.service.RelyingPartyResilience;
 import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
 
 /**
@@ -37,15 +48,28 @@ import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
 public class ResilienceConfiguration {
 
   @Bean
-  public CircuitBreakerConfig circuitBreakerConfig() {
+  public CircuitBreakerConfig circuitBreakerConfig(final BankIdConfigurationProperties properties) {
+    return createCircuitBreakerConfig(properties.getResilience().getCircuitBreaker());
+  }
+
+  /**
+   * Creates a {@link CircuitBreakerConfig} given the circuit breaker configuration properties.
+   *
+   * @param circuitBreaker the circuit breaker configuration properties
+   * @return a {@link CircuitBreakerConfig}
+   */
+  public static CircuitBreakerConfig createCircuitBreakerConfig(
+      final BankIdConfigurationProperties.BankIdResilienceConfiguration.CircuitBreakerConfiguration circuitBreaker) {
     return new CircuitBreakerConfig.Builder()
         .recordException(e -> e instanceof BankIdServerException)
-        .waitDurationInOpenState(Duration.ofMillis(1))
-        .slidingWindowSize(10)
-        .minimumNumberOfCalls(10)
+        .slidingWindow(circuitBreaker.getSlidingWindowSize(), circuitBreaker.getMinimumNumberOfCalls(),
+            circuitBreaker.getSlidingWindowType())
+        .failureRateThreshold(circuitBreaker.getFailureRateThreshold())
+        .slowCallDurationThreshold(circuitBreaker.getSlowCallDurationThreshold())
+        .slowCallRateThreshold(circuitBreaker.getSlowCallRateThreshold())
+        .waitDurationInOpenState(circuitBreaker.getWaitDurationInOpenState())
         .enableAutomaticTransitionFromOpenToHalfOpen()
-        .permittedNumberOfCallsInHalfOpenState(10)
-        .failureRateThreshold(80)
+        .permittedNumberOfCallsInHalfOpenState(circuitBreaker.getPermittedNumberOfCallsInHalfOpenState())
         .build();
   }
 
@@ -60,4 +84,72 @@ public class ResilienceConfiguration {
   public CircuitBreaker circuitBreaker(final CircuitBreakerRegistry registry) {
     return registry.circuitBreaker("bankid");
   }
+
+  @Bean
+  public BulkheadRegistry bulkheadRegistry(final BankIdConfigurationProperties properties,
+      final MeterRegistry registry) {
+    final BankIdConfigurationProperties.BankIdResilienceConfiguration.BulkheadConfiguration bulkhead =
+        properties.getResilience().getBulkhead();
+    final BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+        .maxConcurrentCalls(bulkhead.getMaxConcurrentCalls())
+        .maxWaitDuration(bulkhead.getMaxWaitDuration())
+        .build());
+    TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(registry);
+    return bulkheadRegistry;
+  }
+
+  @Bean
+  public RateLimiterRegistry rateLimiterRegistry(final MeterRegistry registry) {
+    final RateLimiterRegistry rateLimiterRegistry = RateLimiterRegistry.ofDefaults();
+    TaggedRateLimiterMetrics.ofRateLimiterRegistry(rateLimiterRegistry).bindTo(registry);
+    return rateLimiterRegistry;
+  }
+
+  @Bean
+  public RetryRegistry retryRegistry(final MeterRegistry registry) {
+    final RetryRegistry retryRegistry = RetryRegistry.ofDefaults();
+    TaggedRetryMetrics.ofRetryRegistry(retryRegistry).bindTo(registry);
+    return retryRegistry;
+  }
+
+  @Bean
+  public OperationResilience operationResilience(final BankIdConfigurationProperties properties,
+      final RateLimiterRegistry rateLimiterRegistry, final RetryRegistry retryRegistry) {
+    final BankIdConfigurationProperties.BankIdResilienceConfiguration.RateLimiterConfiguration rateLimiter =
+        properties.getResilience().getRateLimiter();
+    final BankIdConfigurationProperties.BankIdResilienceConfiguration.RetryConfiguration retry =
+        properties.getResilience().getRetry();
+
+    final OperationResilience operationResilience = new OperationResilience();
+    if (rateLimiter.isEnabled()) {
+      for (final OperationResilience.Operation operation : OperationResilience.Operation.values()) {
+        operationResilience.setRateLimiter(operation, rateLimiterRegistry.rateLimiter(
+            OperationResilience.NAME_PREFIX + operation.getName(), RateLimiterConfig.custom()
+                .limitForPeriod(rateLimiter.getLimit(operation))
+                .limitRefreshPeriod(rateLimiter.getRefreshPeriod())
+                .timeoutDuration(rateLimiter.getTimeout())
+                .build()));
+      }
+    }
+    if (retry.isEnabled()) {
+      for (final OperationResilience.Operation operation : retry.getOperations()) {
+        final RetryConfig retryConfig = RetryConfig.custom()
+            .maxAttempts(retry.getMaxAttempts())
+            .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(
+                retry.getInitialInterval(), retry.getMultiplier(), retry.getRandomizationFactor()))
+            .retryOnException(e -> OperationResilience.isRetryable(operation, e))
+            .build();
+        operationResilience.setRetry(operation,
+            retryRegistry.retry(OperationResilience.NAME_PREFIX + operation.getName(), retryConfig));
+      }
+    }
+    return operationResilience;
+  }
+
+  @Bean
+  @ConditionalOnProperty(value = "bankid.resilience.per-relying-party", havingValue = "true")
+  public RelyingPartyResilience relyingPartyResilience(final CircuitBreakerRegistry circuitBreakerRegistry,
+      final BulkheadRegistry bulkheadRegistry) {
+    return new RelyingPartyResilience(circuitBreakerRegistry, bulkheadRegistry);
+  }
 }
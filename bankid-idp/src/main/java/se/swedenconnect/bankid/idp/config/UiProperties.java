@@ -232,6 +232,19 @@ public class UiProperties implements InitializingBean {
      */
     private boolean displayQrHelp = false;
 
+    /**
+     * Tells whether QR codes should be rendered by the frontend instead of being generated as images by the backend.
+     * If set, the backend only delivers the QR code data (the secret used to calculate the QR auth code never leaves
+     * the backend).
+     */
+    private boolean clientRendering = false;
+
+    /**
+     * The number of animated QR code frames (seconds) ahead that should be generated in the background. This evens out
+     * CPU usage when many QR codes are displayed at the same time. The default is 0 (no pre-generation).
+     */
+    private int preGenerateFrames = 0;
+
     /**
      * {@inheritDoc}
      */
@@ -17,25 +17,36 @@ package se.swedenconnect.bankid.idp.config.session;
 
 import org.redisson.api.RedissonClient;
 import org.redisson.spring.starter.RedissonAutoConfigurationV4;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.data.redis.autoconfigure.DataRedisAutoConfiguration;
 import org.springframework.boot.session.autoconfigure.SessionProperties;
 import org.springframework.boot.web.server.autoconfigure.ServerProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.session.FlushMode;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
 import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
+import org.springframework.util.Assert;
 
+import se.swedenconnect.bankid.idp.authn.session.BankIdSessionCodec;
+import se.swedenconnect.bankid.idp.authn.session.CachingSessionDao;
 import se.swedenconnect.bankid.idp.authn.session.RedisSessionDao;
 import se.swedenconnect.bankid.idp.authn.session.ServletSessionDao;
 import se.swedenconnect.bankid.idp.authn.session.SessionDao;
+import se.swedenconnect.bankid.idp.authn.session.SpringSessionDao;
 import se.swedenconnect.bankid.idp.concurrency.InMemoryTryLockRepository;
 import se.swedenconnect.bankid.idp.concurrency.RedisTryLockRepository;
 import se.swedenconnect.bankid.idp.concurrency.TryLockRepository;
+import se.swedenconnect.bankid.idp.config.BankIdConfigurationProperties;
 import se.swedenconnect.bankid.idp.config.session.SessionDeprecationConfiguration.SessionPropertyModifier;
 import se.swedenconnect.spring.saml.idp.autoconfigure.session.MemorySessionAutoConfiguration;
 
@@ -52,6 +63,57 @@ public class SessionConfiguration {
   @Autowired
   SessionPropertyModifier _dummy;
 
+  /** The Spring Session Redis flush mode property. */
+  static final String FLUSH_MODE_PROPERTY = "spring.session.data.redis.flush-mode";
+
+  /** The Spring Session Redis flush mode property used by earlier Spring Boot versions. */
+  private static final String LEGACY_FLUSH_MODE_PROPERTY = "spring.session.redis.flush-mode";
+
+  /**
+   * Creates a {@link SessionDao} for Redis according to the session configuration.
+   * <p>
+   * If {@code bankid.session.single-hash} is set, a {@link SpringSessionDao} is used, and the BankID session objects
+   * are stored in the Spring Session hash. Each update is saved directly in one operation, so this requires that
+   * Spring Session uses the {@link FlushMode#ON_SAVE} flush mode (the default). With {@link FlushMode#IMMEDIATE}, every
+   * changed object would be saved separately.
+   * </p>
+   *
+   * @param client the Redis client
+   * @param properties the BankID configuration properties
+   * @param flushMode the Spring Session flush mode
+   * @param sessionRepository the Spring Session repository (only used if single-hash is set)
+   * @return a {@link SessionDao}
+   */
+  static SessionDao createRedisSessionDao(final RedissonClient client, final BankIdConfigurationProperties properties,
+      final FlushMode flushMode, final ObjectProvider<SessionRepository<? extends Session>> sessionRepository) {
+    final BankIdConfigurationProperties.SessionConfiguration session = properties.getSession();
+    if (session.isSingleHash()) {
+      Assert.isTrue(flushMode == FlushMode.ON_SAVE,
+          "bankid.session.single-hash requires that %s is on-save".formatted(FLUSH_MODE_PROPERTY));
+      return new SpringSessionDao(sessionRepository.getObject());
+    }
+    final RedisSessionDao sessionDao = new RedisSessionDao(client);
+    if (session.isCompactCodecEnabled()) {
+      sessionDao.setCodec(new BankIdSessionCodec(client.getConfig().getCodec()));
+    }
+    if (session.getNearCache().isEnabled()) {
+      sessionDao.setNearCache(session.getNearCache().getMaxSessions(), session.getNearCache().getTimeToLive());
+    }
+    return session.isRequestCacheEnabled() ? new CachingSessionDao(sessionDao) : sessionDao;
+  }
+
+  /**
+   * Gets the configured Spring Session Redis flush mode.
+   *
+   * @param environment the environment
+   * @return the flush mode ({@link FlushMode#ON_SAVE} if not configured)
+   */
+  static FlushMode getFlushMode(final Environment environment) {
+    final Binder binder = Binder.get(environment);
+    return binder.bind(FLUSH_MODE_PROPERTY, FlushMode.class)
+        .orElseGet(() -> binder.bind(LEGACY_FLUSH_MODE_PROPERTY, FlushMode.class).orElse(FlushMode.ON_SAVE));
+  }
+
   @Configuration
   @ConditionalOnProperty(name = "saml.idp.session.module", havingValue = "redis")
   public static class ActualRedisSessionConfiguration {
@@ -64,8 +126,9 @@ public class SessionConfiguration {
 
     @ConditionalOnMissingBean
     @Bean("bankidSessionDao")
-    SessionDao redisSessionDao(final RedissonClient client) {
-      return new RedisSessionDao(client);
+    SessionDao redisSessionDao(final RedissonClient client, final BankIdConfigurationProperties properties,
+        final Environment environment, final ObjectProvider<SessionRepository<? extends Session>> sessionRepository) {
+      return createRedisSessionDao(client, properties, getFlushMode(environment), sessionRepository);
     }
 
   }
@@ -99,10 +162,12 @@ public class SessionConfiguration {
       return new RedisTryLockRepository(client);
     }
 
+    // The flush mode of @EnableRedisHttpSession is used, i.e., ON_SAVE
     @ConditionalOnMissingBean
     @Bean("bankidSessionDao")
-    SessionDao redisSessionDao(final RedissonClient client) {
-      return new RedisSessionDao(client);
+    SessionDao redisSessionDao(final RedissonClient client, final BankIdConfigurationProperties properties,
+        final ObjectProvider<SessionRepository<? extends Session>> sessionRepository) {
+      return createRedisSessionDao(client, properties, FlushMode.ON_SAVE, sessionRepository);
     }
 
   }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.api;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.codec.ServerSentEvent;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import se.swedenconnect.bankid.idp.concurrency.InMemoryTryLockRepository;
+import se.swedenconnect.bankid.idp.concurrency.TryLock;
+
+/**
+ * Test cases for the status stream of BankIdApiController.
+ *
+ * @author Martin Lindström
+ */
+class BankIdApiControllerTest {
+
+  private static final Duration INTERVAL = Duration.ofMillis(10);
+
+  @Test
+  void testStreamEventSequence() {
+    final Supplier<Mono<ApiResponse>> poller = poller(List.of(
+        response(ApiResponse.Status.NOT_STARTED, "bankid.msg.rfa13"),
+        response(ApiResponse.Status.IN_PROGRESS, "bankid.msg.rfa21-auth"),
+        response(ApiResponse.Status.IN_PROGRESS, "bankid.msg.rfa21-auth"),
+        response(ApiResponse.Status.IN_PROGRESS, "bankid.msg.rfa9-auth"),
+        response(ApiResponse.Status.COMPLETE, "bankid.msg.rfa9-auth"),
+        response(ApiResponse.Status.COMPLETE, "bankid.msg.rfa9-auth")), new AtomicInteger());
+    final TryLock lock = Mockito.mock(TryLock.class);
+    Mockito.when(lock.tryLock()).thenReturn(true);
+
+    // Unchanged responses are not emitted, and the stream is completed after the final status ...
+    StepVerifier.create(statusStream(poller, lock, Duration.ofSeconds(5)))
+        .expectNext(response(ApiResponse.Status.NOT_STARTED, "bankid.msg.rfa13"))
+        .expectNext(response(ApiResponse.Status.IN_PROGRESS, "bankid.msg.rfa21-auth"))
+        .expectNext(response(ApiResponse.Status.IN_PROGRESS, "bankid.msg.rfa9-auth"))
+        .expectNext(response(ApiResponse.Status.COMPLETE, "bankid.msg.rfa9-auth"))
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+
+    Mockito.verify(lock, Mockito.times(5)).tryLock();
+    Mockito.verify(lock, Mockito.times(5)).unlock();
+  }
+
+  @Test
+  void testStreamEndsAfterMaxDuration() {
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<Mono<ApiResponse>> poller = () -> {
+      calls.incrementAndGet();
+      return Mono.just(response(ApiResponse.Status.IN_PROGRESS, "bankid.msg.rfa21-auth"));
+    };
+    final TryLock lock = Mockito.mock(TryLock.class);
+    Mockito.when(lock.tryLock()).thenReturn(true);
+
+    StepVerifier.create(statusStream(poller, lock, Duration.ofMillis(200)))
+        .expectNext(response(ApiResponse.Status.IN_PROGRESS, "bankid.msg.rfa21-auth"))
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+    Assertions.assertTrue(calls.get() > 1);
+  }
+
+  @Test
+  void testStreamSkipsStatusCheckWhenSessionIsLocked() throws Exception {
+    // Simulates a concurrent poll for the same session holding the lock ...
+    final TryLock lock = new InMemoryTryLockRepository().get("lock:/api/poll:session");
+    Assertions.assertTrue(lock.tryLock());
+
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<Mono<ApiResponse>> poller = poller(List.of(
+        response(ApiResponse.Status.COMPLETE, "bankid.msg.rfa9-auth")), calls);
+    try {
+      StepVerifier.create(statusStream(poller, lock, Duration.ofMillis(200)))
+          .expectComplete()
+          .verify(Duration.ofSeconds(5));
+      Assertions.assertEquals(0, calls.get());
+    }
+    finally {
+      lock.unlock();
+    }
+
+    // When the lock is released, the stream polls again ...
+    StepVerifier.create(statusStream(poller, lock, Duration.ofSeconds(5)))
+        .expectNext(response(ApiResponse.Status.COMPLETE, "bankid.msg.rfa9-auth"))
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+    Assertions.assertEquals(1, calls.get());
+  }
+
+  @Test
+  void testStreamWithAdvancingQrCode() {
+    final Supplier<Mono<ApiResponse>> poller = poller(List.of(
+        qrResponse(ApiResponse.Status.NOT_STARTED, "qr-0"),
+        qrResponse(ApiResponse.Status.NOT_STARTED, "qr-1"),
+        qrResponse(ApiResponse.Status.NOT_STARTED, "qr-1"),
+        qrResponse(ApiResponse.Status.NOT_STARTED, "qr-2"),
+        qrResponse(ApiResponse.Status.IN_PROGRESS, "qr-3"),
+        qrResponse(ApiResponse.Status.COMPLETE, "qr-4")), new AtomicInteger());
+    final TryLock lock = Mockito.mock(TryLock.class);
+    Mockito.when(lock.tryLock()).thenReturn(true);
+
+    // The unchanged status is not sent again, only the new QR codes ...
+    StepVerifier.create(BankIdApiController.statusStream(poller, lock, INTERVAL, Duration.ofSeconds(5))
+        .map(e -> e.event() + ":" + e.data().getStatus() + ":" + e.data().getQrCode()))
+        .expectNext("status:NOT_STARTED:qr-0")
+        .expectNext("qr:NOT_STARTED:qr-1")
+        .expectNext("qr:NOT_STARTED:qr-2")
+        .expectNext("status:IN_PROGRESS:qr-3")
+        .expectNext("status:COMPLETE:qr-4")
+        .expectComplete()
+        .verify(Duration.ofSeconds(5));
+
+    Assertions.assertTrue(BankIdApiController.isSameStatus(
+        qrResponse(ApiResponse.Status.NOT_STARTED, "qr-0"), qrResponse(ApiResponse.Status.NOT_STARTED, "qr-1")));
+  }
+
+  private static Flux<ApiResponse> statusStream(
+      final Supplier<Mono<ApiResponse>> poller, final TryLock lock, final Duration maxDuration) {
+    return BankIdApiController.statusStream(poller, lock, INTERVAL, maxDuration)
+        .doOnNext(e -> Assertions.assertEquals(BankIdApiController.STATUS_EVENT, e.event()))
+        .map(ServerSentEvent::data);
+  }
+
+  private static Supplier<Mono<ApiResponse>> poller(final List<ApiResponse> responses, final AtomicInteger calls) {
+    return () -> Mono.just(responses.get(Math.min(calls.getAndIncrement(), responses.size() - 1)));
+  }
+
+  private static ApiResponse response(final ApiResponse.Status status, final String messageCode) {
+    return new ApiResponse(status, "", "", messageCode);
+  }
+
+  private static ApiResponse qrResponse(final ApiResponse.Status status, final String qrCode) {
+    return new ApiResponse(status, qrCode, "", "bankid.msg.rfa1-qr");
+  }
+
+}
@@ -76,17 +76,13 @@ public class BankIdResponseFixture {
   }
 
   public static BankIdSessionState create(PollRequest request, OrderResponse response) {
-    BankIdSessionState sessionState = new BankIdSessionState();
-    sessionState.push(BankIdSessionData.of(request, response));
-    return sessionState;
+    return new BankIdSessionState().with(BankIdSessionData.of(request, response));
   }
 
   public static BankIdSessionState update(BankIdSessionState state, CollectResponse response) {
     BankIdSessionData bankIdSessionData = state.getBankIdSessionData();
     BankIdSessionData data = BankIdSessionData.of(bankIdSessionData, response, bankIdSessionData.getShowQr());
-    state.pop();
-    state.push(data);
-    return state;
+    return state.with(data);
   }
 
   public static PollRequest createPollRequest(BankIDClient client) {
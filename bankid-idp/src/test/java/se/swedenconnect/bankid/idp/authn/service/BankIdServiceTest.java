@@ -31,8 +31,10 @@ import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import reactor.core.publisher.Mono;
 import se.swedenconnect.bankid.idp.authn.api.ApiResponse;
+import se.swedenconnect.bankid.idp.authn.api.ServiceInformation;
 import se.swedenconnect.bankid.idp.authn.events.BankIdEventPublisher;
 import se.swedenconnect.bankid.idp.authn.session.BankIdSessionState;
+import se.swedenconnect.bankid.idp.config.BankIdConfigurationProperties;
 import se.swedenconnect.bankid.idp.config.ResilienceConfiguration;
 import se.swedenconnect.bankid.rpapi.service.BankIDClient;
 import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
@@ -81,7 +83,7 @@ class BankIdServiceTest {
     }).thenAnswer(a -> {
       return Mono.just(BankIdResponseFixture.createInitial(expectedSecondSession));
     });
-    BankIdResponseFixture.update(sessionState, collectResponse);
+    sessionState = BankIdResponseFixture.update(sessionState, collectResponse);
 
     // Third request should trigger authenticate and collect again with a new autostartToken
     // ---
@@ -134,9 +136,15 @@ class BankIdServiceTest {
   }
 
   @Test
-  void circuitBreakerWillNeverBeOpen() {
+  void circuitBreakerOpensAndTransitionsToHalfOpen() {
+    final BankIdConfigurationProperties.BankIdResilienceConfiguration.CircuitBreakerConfiguration properties =
+        new BankIdConfigurationProperties.BankIdResilienceConfiguration.CircuitBreakerConfiguration();
+    properties.setMinimumNumberOfCalls(10);
+    properties.setWaitDurationInOpenState(Duration.ofMillis(200));
+    properties.afterPropertiesSet();
+
     ResilienceConfiguration resilienceConfiguration = new ResilienceConfiguration();
-    CircuitBreakerConfig config = resilienceConfiguration.circuitBreakerConfig();
+    CircuitBreakerConfig config = ResilienceConfiguration.createCircuitBreakerConfig(properties);
     CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
     CircuitBreaker circuitBreaker = resilienceConfiguration.circuitBreaker(registry);
     BankIdService service = new BankIdService(new BankIdEventPublisher(Mockito.mock(ApplicationEventPublisher.class)),
@@ -149,8 +157,10 @@ class BankIdServiceTest {
       Assertions.assertThrows(BankIdServerException.class,
           () -> service.poll(BankIdResponseFixture.createPollRequest(client)).block());
     }
+    Assertions.assertSame(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    Assertions.assertEquals(ServiceInformation.Status.ISSUES, service.getServiceInformation().block().getStatus());
     try {
-      Thread.sleep(50);
+      Thread.sleep(500);
     }
     catch (Exception e) {
       // Do nothing
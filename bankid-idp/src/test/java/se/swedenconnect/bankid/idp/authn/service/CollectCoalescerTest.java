@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+
+/**
+ * Test cases for CollectCoalescer.
+ *
+ * @author Martin Lindström
+ */
+class CollectCoalescerTest {
+
+  @Test
+  void testConcurrentCollectsAreShared() {
+    final CollectCoalescer coalescer = new CollectCoalescer(Duration.ZERO);
+    final AtomicInteger calls = new AtomicInteger();
+    final Sinks.One<CollectResponse> upstream = Sinks.one();
+    final Supplier<Mono<CollectResponse>> collector = () -> {
+      calls.incrementAndGet();
+      return upstream.asMono();
+    };
+
+    final Mono<CollectResponse> first = coalescer.collect("or-1", collector).cache();
+    final Mono<CollectResponse> second = coalescer.collect("or-1", collector).cache();
+    first.subscribe();
+    second.subscribe();
+
+    upstream.tryEmitValue(response("or-1", CollectResponse.Status.PENDING));
+    Assertions.assertEquals(CollectResponse.Status.PENDING, first.block().getStatus());
+    Assertions.assertSame(first.block(), second.block());
+    Assertions.assertEquals(1, calls.get());
+  }
+
+  @Test
+  void testResultIsReusedWithinWindow() {
+    final CollectCoalescer coalescer = new CollectCoalescer(Duration.ofMillis(200));
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<Mono<CollectResponse>> collector = () -> {
+      calls.incrementAndGet();
+      return Mono.just(response("or-1", CollectResponse.Status.PENDING));
+    };
+
+    coalescer.collect("or-1", collector).block();
+    coalescer.collect("or-1", collector).block();
+    Assertions.assertEquals(1, calls.get());
+
+    sleep(300);
+    coalescer.collect("or-1", collector).block();
+    Assertions.assertEquals(2, calls.get());
+  }
+
+  @Test
+  void testErrorsAreNotReused() {
+    final CollectCoalescer coalescer = new CollectCoalescer(Duration.ofMinutes(1));
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<Mono<CollectResponse>> collector = () -> {
+      calls.incrementAndGet();
+      return Mono.error(new BankIdServerException("error"));
+    };
+
+    Assertions.assertThrows(BankIdServerException.class, () -> coalescer.collect("or-1", collector).block());
+    Assertions.assertThrows(BankIdServerException.class, () -> coalescer.collect("or-1", collector).block());
+    Assertions.assertEquals(2, calls.get());
+    Assertions.assertEquals(0, coalescer.size());
+  }
+
+  private static CollectResponse response(final String orderReference, final CollectResponse.Status status) {
+    final CollectResponse response = new CollectResponse();
+    response.setOrderReference(orderReference);
+    response.setStatus(status);
+    return response;
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
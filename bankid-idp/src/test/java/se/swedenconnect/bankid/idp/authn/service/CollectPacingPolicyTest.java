@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdUserException;
+import se.swedenconnect.bankid.rpapi.types.BankIDException;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+import se.swedenconnect.bankid.rpapi.types.ProgressStatus;
+
+/**
+ * Test cases for CollectPacingPolicy.
+ *
+ * @author Martin Lindström
+ */
+class CollectPacingPolicyTest {
+
+  @Test
+  void testIntervals() {
+    final CollectPacingPolicy policy = new CollectPacingPolicy();
+    final CollectResponse outstanding = pending(ProgressStatus.OUTSTANDING_TRANSACTION);
+    final CollectResponse userSign = pending(ProgressStatus.USER_SIGN);
+
+    Assertions.assertEquals(CollectPacingPolicy.DEFAULT_STATUS_CHANGE_INTERVAL,
+        policy.getMinimumInterval(null, outstanding));
+    Assertions.assertEquals(CollectPacingPolicy.DEFAULT_WAITING_INTERVAL,
+        policy.getMinimumInterval(outstanding, pending(ProgressStatus.OUTSTANDING_TRANSACTION)));
+    Assertions.assertEquals(CollectPacingPolicy.DEFAULT_STATUS_CHANGE_INTERVAL,
+        policy.getMinimumInterval(outstanding, userSign));
+    Assertions.assertEquals(CollectPacingPolicy.DEFAULT_USER_ACTION_INTERVAL,
+        policy.getMinimumInterval(userSign, pending(ProgressStatus.USER_SIGN)));
+
+    final CollectResponse complete = new CollectResponse();
+    complete.setStatus(CollectResponse.Status.COMPLETE);
+    Assertions.assertEquals(Duration.ZERO, policy.getMinimumInterval(userSign, complete));
+  }
+
+  @Test
+  void testErrorBackoff() {
+    final CollectPacingPolicy policy = new CollectPacingPolicy();
+    Assertions.assertEquals(CollectPacingPolicy.DEFAULT_ERROR_BACKOFF,
+        policy.getErrorBackoff(new BankIdUserException(ErrorCode.MAINTENANCE, "maintenance")));
+    Assertions.assertEquals(CollectPacingPolicy.DEFAULT_ERROR_BACKOFF, policy.getErrorBackoff(
+        new BankIDException(ErrorCode.UNKNOWN_ERROR, "error",
+            new BankIdUserException(ErrorCode.INTERNAL_ERROR, "internal"))));
+    Assertions.assertEquals(Duration.ZERO,
+        policy.getErrorBackoff(new BankIdUserException(ErrorCode.INVALID_PARAMETERS, "invalid")));
+  }
+
+  @Test
+  void testCoalescerUsesPolicy() {
+    final CollectPacingPolicy policy = new CollectPacingPolicy();
+    policy.setStatusChangeInterval(Duration.ofMinutes(1));
+    final CollectCoalescer coalescer = new CollectCoalescer(Duration.ZERO);
+    coalescer.setPacingPolicy(policy);
+
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<Mono<CollectResponse>> collector = () -> {
+      calls.incrementAndGet();
+      return Mono.just(pending(ProgressStatus.OUTSTANDING_TRANSACTION));
+    };
+    coalescer.collect("or-1", collector).block();
+    coalescer.collect("or-1", collector).block();
+    Assertions.assertEquals(1, calls.get());
+  }
+
+  private static CollectResponse pending(final ProgressStatus status) {
+    final CollectResponse response = new CollectResponse();
+    response.setOrderReference("or-1");
+    response.setStatus(CollectResponse.Status.PENDING);
+    response.setHintCode(status.getValue());
+    return response;
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+
+/**
+ * Test cases for CollectScheduler.
+ *
+ * @author Martin Lindström
+ * @author Felix Hellman
+ */
+class CollectSchedulerTest {
+
+  @Test
+  void testReadsAreServedFromLatestResult() {
+    final CollectScheduler scheduler = new CollectScheduler(Duration.ofMillis(1), Duration.ofMinutes(1));
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<Mono<CollectResponse>> collector = () -> {
+      calls.incrementAndGet();
+      return Mono.just(response("or-1", CollectResponse.Status.PENDING));
+    };
+
+    Assertions.assertEquals(CollectResponse.Status.PENDING, scheduler.collect("or-1", collector).block().getStatus());
+    Assertions.assertEquals(1, calls.get());
+
+    // Polling again should not result in a new collect call ...
+    scheduler.collect("or-1", collector).block();
+    scheduler.collect("or-1", collector).block();
+    Assertions.assertEquals(1, calls.get());
+    Assertions.assertEquals(1, scheduler.size());
+
+    // But the scheduler should collect ...
+    sleep(5);
+    scheduler.tick();
+    Assertions.assertEquals(2, calls.get());
+  }
+
+  @Test
+  void testCompletedOrderIsHandedOver() {
+    final CollectScheduler scheduler = new CollectScheduler(Duration.ofMillis(1), Duration.ofMinutes(1));
+    final AtomicInteger calls = new AtomicInteger();
+    final Supplier<Mono<CollectResponse>> collector = () -> {
+      return Mono.just(response("or-1", calls.incrementAndGet() == 1
+          ? CollectResponse.Status.PENDING
+          : CollectResponse.Status.COMPLETE));
+    };
+
+    Assertions.assertEquals(CollectResponse.Status.PENDING, scheduler.collect("or-1", collector).block().getStatus());
+    sleep(5);
+    scheduler.tick();
+
+    // Further ticks should not collect a completed order ...
+    sleep(5);
+    scheduler.tick();
+    Assertions.assertEquals(2, calls.get());
+
+    Assertions.assertEquals(CollectResponse.Status.COMPLETE, scheduler.collect("or-1", collector).block().getStatus());
+    Assertions.assertEquals(0, scheduler.size());
+  }
+
+  @Test
+  void testErrorIsHandedOver() {
+    final CollectScheduler scheduler = new CollectScheduler(Duration.ofSeconds(2), Duration.ofMinutes(1));
+    final Supplier<Mono<CollectResponse>> collector = () -> Mono.error(new BankIdServerException("error"));
+
+    Assertions.assertThrows(BankIdServerException.class, () -> scheduler.collect("or-1", collector).block());
+    Assertions.assertEquals(0, scheduler.size());
+  }
+
+  @Test
+  void testAbandonedAndRemovedOrders() {
+    final CollectScheduler scheduler = new CollectScheduler(Duration.ofSeconds(2), Duration.ofMillis(1));
+    final Supplier<Mono<CollectResponse>> collector =
+        () -> Mono.just(response("or", CollectResponse.Status.PENDING));
+
+    scheduler.collect("or-1", collector).block();
+    scheduler.collect("or-2", collector).block();
+    Assertions.assertEquals(2, scheduler.size());
+
+    scheduler.remove("or-2");
+    Assertions.assertEquals(1, scheduler.size());
+
+    sleep(5);
+    scheduler.tick();
+    Assertions.assertEquals(0, scheduler.size());
+  }
+
+  private static CollectResponse response(final String orderReference, final CollectResponse.Status status) {
+    final CollectResponse response = new CollectResponse();
+    response.setOrderReference(orderReference);
+    response.setStatus(status);
+    return response;
+  }
+
+  private static void sleep(final long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import reactor.core.publisher.Mono;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdTimeoutException;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdUserException;
+import se.swedenconnect.bankid.rpapi.types.BankIDException;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+
+/**
+ * Test cases for OperationResilience.
+ *
+ * @author Martin Lindström
+ */
+class OperationResilienceTest {
+
+  @Test
+  void testRetryTransientErrors() {
+    final OperationResilience resilience = new OperationResilience();
+    resilience.setRetry(OperationResilience.Operation.COLLECT, retry());
+
+    final AtomicInteger calls = new AtomicInteger();
+    final Mono<String> call = Mono.defer(() -> calls.incrementAndGet() < 3
+        ? Mono.error(new BankIdServerException("error"))
+        : Mono.just("ok"));
+
+    Assertions.assertEquals("ok",
+        call.transformDeferred(resilience.operator(OperationResilience.Operation.COLLECT)).block());
+    Assertions.assertEquals(3, calls.get());
+  }
+
+  @Test
+  void testNoRetryForOtherErrors() {
+    final OperationResilience resilience = new OperationResilience();
+    resilience.setRetry(OperationResilience.Operation.COLLECT, retry());
+
+    final AtomicInteger calls = new AtomicInteger();
+    final Mono<String> call = Mono.defer(() -> {
+      calls.incrementAndGet();
+      return Mono.error(new BankIdUserException(ErrorCode.INVALID_PARAMETERS, "error"));
+    });
+
+    Assertions.assertThrows(BankIdUserException.class,
+        () -> call.transformDeferred(resilience.operator(OperationResilience.Operation.COLLECT)).block());
+    Assertions.assertEquals(1, calls.get());
+  }
+
+  @Test
+  void testNoRetryForNonIdempotentOperations() {
+    final OperationResilience resilience = new OperationResilience();
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> resilience.setRetry(OperationResilience.Operation.AUTH, retry()));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> resilience.setRetry(OperationResilience.Operation.SIGN, retry()));
+  }
+
+  @Test
+  void testRateLimiter() {
+    final OperationResilience resilience = new OperationResilience();
+    resilience.setRateLimiter(OperationResilience.Operation.AUTH, RateLimiter.of("auth", RateLimiterConfig.custom()
+        .limitForPeriod(1)
+        .limitRefreshPeriod(Duration.ofMinutes(1))
+        .timeoutDuration(Duration.ZERO)
+        .build()));
+
+    Assertions.assertEquals("ok",
+        Mono.just("ok").transformDeferred(resilience.operator(OperationResilience.Operation.AUTH)).block());
+    Assertions.assertThrows(RequestNotPermitted.class,
+        () -> Mono.just("ok").transformDeferred(resilience.operator(OperationResilience.Operation.AUTH)).block());
+
+    // Other operations are not limited ...
+    Assertions.assertEquals("ok",
+        Mono.just("ok").transformDeferred(resilience.operator(OperationResilience.Operation.SIGN)).block());
+  }
+
+  @Test
+  void testIsTransientError() {
+    Assertions.assertTrue(OperationResilience.isTransientError(new BankIdServerException("error")));
+    Assertions.assertTrue(OperationResilience.isTransientError(
+        new BankIDException(ErrorCode.UNKNOWN_ERROR, "wrapped", new BankIdServerException("error"))));
+    Assertions.assertTrue(OperationResilience.isTransientError(
+        new BankIdUserException(ErrorCode.MAINTENANCE, "maintenance")));
+    Assertions.assertFalse(OperationResilience.isTransientError(
+        new BankIdUserException(ErrorCode.ALREADY_IN_PROGRESS, "error")));
+    Assertions.assertFalse(OperationResilience.isTransientError(new IllegalStateException()));
+  }
+
+  @Test
+  void testIsRetryable() {
+    final BankIdTimeoutException timeout = new BankIdTimeoutException("timeout", new IllegalStateException());
+    Assertions.assertFalse(OperationResilience.isRetryable(OperationResilience.Operation.COLLECT, timeout));
+    Assertions.assertFalse(OperationResilience.isRetryable(OperationResilience.Operation.COLLECT,
+        new BankIDException(ErrorCode.UNKNOWN_ERROR, "wrapped", timeout)));
+    Assertions.assertTrue(OperationResilience.isRetryable(OperationResilience.Operation.CANCEL, timeout));
+    Assertions.assertTrue(OperationResilience.isRetryable(OperationResilience.Operation.COLLECT,
+        new BankIdServerException("error")));
+    Assertions.assertFalse(OperationResilience.isRetryable(OperationResilience.Operation.COLLECT,
+        new BankIdUserException(ErrorCode.ALREADY_IN_PROGRESS, "error")));
+  }
+
+  @Test
+  void testNoRetryForCollectTimeout() {
+    final OperationResilience resilience = new OperationResilience();
+    resilience.setRetry(OperationResilience.Operation.COLLECT, Retry.of("test", RetryConfig.custom()
+        .maxAttempts(3)
+        .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(1), 2.0, 0.5))
+        .retryOnException(e -> OperationResilience.isRetryable(OperationResilience.Operation.COLLECT, e))
+        .build()));
+
+    final AtomicInteger calls = new AtomicInteger();
+    final Mono<String> call = Mono.defer(() -> {
+      calls.incrementAndGet();
+      return Mono.error(new BankIdTimeoutException("timeout", new IllegalStateException()));
+    });
+
+    Assertions.assertThrows(BankIdTimeoutException.class,
+        () -> call.transformDeferred(resilience.operator(OperationResilience.Operation.COLLECT)).block());
+    Assertions.assertEquals(1, calls.get());
+  }
+
+  private static Retry retry() {
+    return Retry.of("test", RetryConfig.custom()
+        .maxAttempts(3)
+        .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(1), 2.0, 0.5))
+        .retryOnException(OperationResilience::isTransientError)
+        .build());
+  }
+
+}
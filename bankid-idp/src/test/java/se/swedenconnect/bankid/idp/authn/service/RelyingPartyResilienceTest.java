@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.service;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import se.swedenconnect.bankid.rpapi.service.impl.BankIdServerException;
+
+/**
+ * Test cases for RelyingPartyResilience.
+ *
+ * @author Martin Lindström
+ */
+class RelyingPartyResilienceTest {
+
+  @Test
+  void testNamesDoNotCollideWithOperationNames() {
+    final RelyingPartyResilience resilience =
+        new RelyingPartyResilience(CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+
+    // A relying party named as an operation should not share names with the rate limiters and retries ...
+    Assertions.assertNotEquals(OperationResilience.NAME_PREFIX + OperationResilience.Operation.COLLECT.getName(),
+        resilience.getCircuitBreaker(OperationResilience.Operation.COLLECT.getName()).getName());
+  }
+
+  @Test
+  void testCircuitBreakersAreIsolated() {
+    final RelyingPartyResilience resilience = new RelyingPartyResilience(
+        CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+            .recordException(e -> e instanceof BankIdServerException)
+            .slidingWindowSize(2)
+            .minimumNumberOfCalls(2)
+            .failureRateThreshold(50)
+            .waitDurationInOpenState(Duration.ofMinutes(1))
+            .build()),
+        BulkheadRegistry.ofDefaults());
+
+    Assertions.assertTrue(resilience.isAvailable());
+
+    for (int i = 0; i < 2; i++) {
+      Assertions.assertThrows(BankIdServerException.class, () -> Mono.<String> error(new BankIdServerException("error"))
+          .transformDeferred(resilience.operator("rp1"))
+          .block());
+    }
+    Assertions.assertEquals(CircuitBreaker.State.OPEN, resilience.getCircuitBreaker("rp1").getState());
+    Assertions.assertThrows(CallNotPermittedException.class, () -> Mono.just("ok")
+        .transformDeferred(resilience.operator("rp1"))
+        .block());
+
+    // Calls for other relying parties should not be affected ...
+    Assertions.assertEquals("ok", Mono.just("ok").transformDeferred(resilience.operator("rp2")).block());
+    Assertions.assertEquals(CircuitBreaker.State.CLOSED, resilience.getCircuitBreaker("rp2").getState());
+
+    // Availability is reported per relying party, and if the relying party is not known, all must be available ...
+    Assertions.assertFalse(resilience.isAvailable("rp1"));
+    Assertions.assertTrue(resilience.isAvailable("rp2"));
+    Assertions.assertTrue(resilience.isAvailable("rp3"));
+    Assertions.assertFalse(resilience.isAvailable());
+  }
+
+  @Test
+  void testBulkhead() {
+    final RelyingPartyResilience resilience = new RelyingPartyResilience(CircuitBreakerRegistry.ofDefaults(),
+        BulkheadRegistry.of(BulkheadConfig.custom()
+            .maxConcurrentCalls(1)
+            .maxWaitDuration(Duration.ZERO)
+            .build()));
+
+    // Occupy the only permit ...
+    final Sinks.One<String> pending = Sinks.one();
+    pending.asMono().transformDeferred(resilience.operator("rp1")).subscribe();
+    Assertions.assertEquals(0, resilience.getBulkhead("rp1").getMetrics().getAvailableConcurrentCalls());
+
+    Assertions.assertThrows(BulkheadFullException.class, () -> Mono.just("ok")
+        .transformDeferred(resilience.operator("rp1"))
+        .block());
+    Assertions.assertEquals("ok", Mono.just("ok").transformDeferred(resilience.operator("rp2")).block());
+
+    pending.tryEmitValue("done");
+    Assertions.assertEquals(1, resilience.getBulkhead("rp1").getMetrics().getAvailableConcurrentCalls());
+    Assertions.assertEquals("ok", Mono.just("ok").transformDeferred(resilience.operator("rp1")).block());
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import se.swedenconnect.bankid.idp.authn.context.BankIdOperation;
+import se.swedenconnect.bankid.idp.authn.events.CollectResponseEvent;
+import se.swedenconnect.bankid.idp.authn.service.PollRequest;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+import se.swedenconnect.bankid.rpapi.types.ProgressStatus;
+
+/**
+ * Test cases for BankIdSessionDataListener.
+ *
+ * @author Martin Lindström
+ */
+class BankIdSessionDataListenerTest {
+
+  @Test
+  void testUnchangedCollectIsNotWritten() {
+    final SessionDao dao = Mockito.spy(new ServletSessionDao());
+    final BankIdSessions sessions = new BankIdSessions(dao);
+    final BankIdSessionDataListener listener = new BankIdSessionDataListener(sessions, sessions);
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    sessions.save(request, createData(Instant.now()));
+    Mockito.clearInvocations(dao);
+
+    listener.handleCollectResponse(createEvent(request, "outstandingTransaction"));
+    Mockito.verify(dao).write(Mockito.eq(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE), Mockito.any(),
+        Mockito.any());
+
+    // The same response again should not lead to a write ...
+    listener.handleCollectResponse(createEvent(request, "outstandingTransaction"));
+    listener.handleCollectResponse(createEvent(request, "outstandingTransaction"));
+    Mockito.verify(dao, Mockito.times(1)).write(Mockito.any(), Mockito.any(), Mockito.any());
+
+    // But a changed hint code should ...
+    listener.handleCollectResponse(createEvent(request, "userSign"));
+    Mockito.verify(dao, Mockito.times(2)).write(Mockito.any(), Mockito.any(), Mockito.any());
+    Assertions.assertEquals(ProgressStatus.USER_SIGN,
+        sessions.loadSessionData(request).getBankIdSessionData().getStatus());
+  }
+
+  @Test
+  void testIsWriteRequired() {
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.getSession().setMaxInactiveInterval(600);
+
+    final Instant startTime = Instant.now().minus(400, ChronoUnit.SECONDS);
+    final BankIdSessionState state = createState(startTime, Instant.now());
+    Assertions.assertFalse(BankIdSessionDataListener.isWriteRequired(state, createData(startTime), request));
+    final BankIdSessionData changed = createData(startTime);
+    changed.setStatus(ProgressStatus.USER_SIGN);
+    Assertions.assertTrue(BankIdSessionDataListener.isWriteRequired(state, changed, request));
+
+    // Unchanged, but the expiration time needs to be refreshed
+    final BankIdSessionState old = createState(startTime, Instant.now().minus(301, ChronoUnit.SECONDS));
+    Assertions.assertTrue(BankIdSessionDataListener.isWriteRequired(old, createData(startTime), request));
+
+    // Unknown write time
+    Assertions.assertTrue(
+        BankIdSessionDataListener.isWriteRequired(createState(startTime, null), createData(startTime), request));
+  }
+
+  @Test
+  void testExpirationIsRefreshedRelativeToLastWrite() {
+    final SessionDao dao = Mockito.spy(new ServletSessionDao());
+    final BankIdSessions sessions = new BankIdSessions(dao);
+    final BankIdSessionDataListener listener = new BankIdSessionDataListener(sessions, sessions);
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.getSession().setMaxInactiveInterval(600);
+
+    // An order started long ago, but the state was just written ...
+    sessions.save(request, createData(Instant.now().minus(400, ChronoUnit.SECONDS)));
+    listener.handleCollectResponse(createEvent(request, "outstandingTransaction"));
+    Mockito.clearInvocations(dao);
+
+    listener.handleCollectResponse(createEvent(request, "outstandingTransaction"));
+    listener.handleCollectResponse(createEvent(request, "outstandingTransaction"));
+    Mockito.verify(dao, Mockito.never()).write(Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  private static BankIdSessionState createState(final Instant startTime, final Instant lastWriteTime) {
+    final BankIdSessionState state = new BankIdSessionState().with(createData(startTime));
+    state.setLastWriteTime(lastWriteTime);
+    return state;
+  }
+
+  private static CollectResponseEvent createEvent(final MockHttpServletRequest request, final String hintCode) {
+    final CollectResponse response = new CollectResponse();
+    response.setOrderReference("or-1");
+    response.setStatus(CollectResponse.Status.PENDING);
+    response.setHintCode(hintCode);
+    return new CollectResponseEvent(PollRequest.builder().request(request).qr(false).build(), response);
+  }
+
+  private static BankIdSessionData createData(final Instant startTime) {
+    return BankIdSessionData.builder()
+        .orderReference("or-1")
+        .startTime(startTime)
+        .status(ProgressStatus.STARTED)
+        .startFailed(false)
+        .sessionExpired(false)
+        .messageCode("bankid.msg.rfa21-auth")
+        .showQr(false)
+        .operation(BankIdOperation.AUTH)
+        .build();
+  }
+
+}
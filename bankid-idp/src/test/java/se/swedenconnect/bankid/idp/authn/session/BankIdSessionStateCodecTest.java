@@ -0,0 +1,140 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.redisson.client.codec.StringCodec;
+
+import io.netty.buffer.ByteBuf;
+import se.swedenconnect.bankid.idp.authn.context.BankIdOperation;
+import se.swedenconnect.bankid.rpapi.types.ErrorCode;
+import se.swedenconnect.bankid.rpapi.types.ProgressStatus;
+
+/**
+ * Test cases for BankIdSessionStateCodec and BankIdSessionCodec.
+ *
+ * @author Martin Lindström
+ */
+class BankIdSessionStateCodecTest {
+
+  @Test
+  void testRoundTrip() throws Exception {
+    final BankIdSessionState state = new BankIdSessionState()
+        .with(BankIdSessionData.builder()
+            .orderReference("131daac9-16c6-4618-beb0-365768f37288")
+            .startTime(Instant.ofEpochMilli(1700000000000L))
+            .status(ProgressStatus.STARTED)
+            .operation(BankIdOperation.AUTH)
+            .build())
+        .with(createData());
+    state.setLastWriteTime(Instant.ofEpochMilli(1700000040000L));
+
+    final BankIdSessionState decoded = BankIdSessionStateCodec.decode(BankIdSessionStateCodec.encode(state));
+    assertStateEquals(state, decoded);
+    Assertions.assertEquals(Instant.ofEpochMilli(1700000000000L), decoded.getInitialOrderTime());
+
+    // All fields absent
+    final BankIdSessionState empty = new BankIdSessionState().with(new BankIdSessionData());
+    assertStateEquals(empty, BankIdSessionStateCodec.decode(BankIdSessionStateCodec.encode(empty)));
+
+    // No data
+    Assertions.assertEquals(0,
+        BankIdSessionStateCodec.decode(BankIdSessionStateCodec.encode(new BankIdSessionState())).getOrders());
+  }
+
+  @Test
+  void testSizeIsConstant() {
+    BankIdSessionState state = new BankIdSessionState();
+    state = state.with(createData());
+    final int size = BankIdSessionStateCodec.encode(state).length;
+
+    final BankIdSessionData data = createData();
+    for (int i = 0; i < 10; i++) {
+      data.setOrderReference("order-" + i);
+      state = state.with(data);
+    }
+    Assertions.assertEquals(11, state.getOrders());
+    Assertions.assertEquals(size, BankIdSessionStateCodec.encode(state).length);
+  }
+
+  @Test
+  void testInvalidEncoding() {
+    final byte[] encoding = BankIdSessionStateCodec.encode(new BankIdSessionState());
+    encoding[2] = (byte) (BankIdSessionStateCodec.VERSION + 1);
+    Assertions.assertThrows(IOException.class, () -> BankIdSessionStateCodec.decode(encoding));
+    Assertions.assertThrows(IOException.class, () -> BankIdSessionStateCodec.decode(new byte[] { 1, 2, 3 }));
+  }
+
+  @Test
+  void testSize() throws Exception {
+    final BankIdSessionState state = new BankIdSessionState().with(createData());
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(state);
+    }
+    final int encodedSize = BankIdSessionStateCodec.encode(state).length;
+    Assertions.assertTrue(encodedSize * 3 < bytes.size(),
+        "Encoded size %d, serialized size %d".formatted(encodedSize, bytes.size()));
+  }
+
+  @Test
+  void testRedisCodec() throws Exception {
+    final BankIdSessionCodec codec = new BankIdSessionCodec(StringCodec.INSTANCE);
+
+    final BankIdSessionState state = new BankIdSessionState().with(createData());
+    final ByteBuf encodedState = codec.getMapValueEncoder().encode(state);
+    final Object decodedState = codec.getMapValueDecoder().decode(encodedState, null);
+    assertStateEquals(state, (BankIdSessionState) decodedState);
+    encodedState.release();
+
+    // Other values are handled by the underlying codec
+    final ByteBuf encodedString = codec.getMapValueEncoder().encode("other");
+    Assertions.assertEquals("other", codec.getMapValueDecoder().decode(encodedString, null));
+    encodedString.release();
+  }
+
+  private static void assertStateEquals(final BankIdSessionState expected, final BankIdSessionState actual) {
+    Assertions.assertEquals(expected.getOrders(), actual.getOrders());
+    Assertions.assertEquals(expected.getBankIdSessionData(), actual.getBankIdSessionData());
+    Assertions.assertEquals(expected.getInitialOrderTime(), actual.getInitialOrderTime());
+    Assertions.assertEquals(expected.getLastWriteTime(), actual.getLastWriteTime());
+  }
+
+  private static BankIdSessionData createData() {
+    return BankIdSessionData.builder()
+        .autoStartToken("46f6aa68-a520-49d8-9be7-f0726d038c26")
+        .qrStartToken("67df3917-fa0d-44e5-b327-edcc928297f8")
+        .qrStartSecret("d28db9a7-4cde-429e-a983-359be676944c")
+        .startTime(Instant.ofEpochMilli(1700000030000L))
+        .orderReference("131daac9-16c6-4618-beb0-365768f37289")
+        .status(ProgressStatus.USER_SIGN)
+        .errorCode(ErrorCode.START_FAILED)
+        .startFailed(true)
+        .sessionExpired(false)
+        .messageCode("bankid.msg.rfa9-auth")
+        .showQr(true)
+        .operation(BankIdOperation.SIGN)
+        .build();
+  }
+
+}
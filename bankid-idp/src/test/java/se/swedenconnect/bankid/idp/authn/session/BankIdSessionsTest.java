@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import se.swedenconnect.bankid.idp.authn.context.PreviousDeviceSelection;
+import se.swedenconnect.bankid.rpapi.types.CollectResponse;
+
+/**
+ * Test cases for BankIdSessions.
+ *
+ * @author Martin Lindström
+ */
+class BankIdSessionsTest {
+
+  @Test
+  void testSaveWithCompletionData() {
+    final SessionDao dao = Mockito.spy(new ServletSessionDao());
+    final BankIdSessions sessions = new BankIdSessions(dao);
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    sessions.save(request, BankIdSessionData.builder().orderReference("or-1").build());
+    final CollectResponse completionData = new CollectResponse();
+    sessions.save(request, BankIdSessionData.builder().orderReference("or-1").build(), completionData);
+
+    Mockito.verify(dao).update(anyMap(), eq(List.of()), any());
+    Assertions.assertEquals("or-1", sessions.loadSessionData(request).getBankIdSessionData().getOrderReference());
+    Assertions.assertSame(completionData, sessions.loadCompletionData(request));
+  }
+
+  @Test
+  void testComplete() {
+    final SessionDao dao = Mockito.spy(new ServletSessionDao());
+    final BankIdSessions sessions = new BankIdSessions(dao);
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    sessions.save(request, BankIdSessionData.builder().orderReference("or-1").build());
+    sessions.save(request, new CollectResponse());
+    sessions.complete(request, PreviousDeviceSelection.OTHER);
+
+    Mockito.verify(dao).update(
+        Map.of(BankIdSessionAttributeKeys.PREVIOUS_DEVICE_SESSION_ATTRIBUTE, PreviousDeviceSelection.OTHER.getValue()),
+        BankIdSessionAttributeKeys.BANKID_VOLATILE_ATTRIBUTES, request);
+    Assertions.assertEquals(PreviousDeviceSelection.OTHER, sessions.loadPreviousSelectedDevice(request));
+    Assertions.assertNull(sessions.loadSessionData(request));
+    Assertions.assertNull(sessions.loadCompletionData(request));
+  }
+
+  @Test
+  void testStateWithoutSessionData() {
+    final SessionDao dao = new ServletSessionDao();
+    final BankIdSessions sessions = new BankIdSessions(dao);
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    // For example a state written using an earlier layout of the class ...
+    dao.write(BankIdSessionAttributeKeys.BANKID_STATE_ATTRIBUTE, new BankIdSessionState(), request);
+    Assertions.assertNull(sessions.loadSessionData(request));
+  }
+
+}
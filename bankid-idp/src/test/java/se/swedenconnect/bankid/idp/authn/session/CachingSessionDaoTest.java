@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+
+/**
+ * Test cases for CachingSessionDao.
+ *
+ * @author Martin Lindström
+ */
+class CachingSessionDaoTest {
+
+  @Test
+  void testReadsAreCachedPerRequest() {
+    final SessionDao delegate = Mockito.spy(new ServletSessionDao());
+    final SessionDao dao = new CachingSessionDao(delegate);
+    final MockHttpSession session = new MockHttpSession();
+
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setSession(session);
+    delegate.write("key", "value", request);
+
+    Assertions.assertEquals("value", dao.read("key", String.class, request));
+    Assertions.assertEquals("value", dao.read("key", String.class, request));
+    Assertions.assertNull(dao.read("missing", String.class, request));
+    Assertions.assertNull(dao.read("missing", String.class, request));
+    Mockito.verify(delegate, Mockito.times(1)).read("key", String.class, request);
+    Mockito.verify(delegate, Mockito.times(1)).read("missing", String.class, request);
+
+    // A new request should read again ...
+    final MockHttpServletRequest request2 = new MockHttpServletRequest();
+    request2.setSession(session);
+    Assertions.assertEquals("value", dao.read("key", String.class, request2));
+    Mockito.verify(delegate, Mockito.times(1)).read("key", String.class, request2);
+  }
+
+  @Test
+  void testClearCache() {
+    final SessionDao delegate = Mockito.spy(new ServletSessionDao());
+    final SessionDao dao = new CachingSessionDao(delegate);
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setSession(new MockHttpSession());
+
+    Assertions.assertNull(dao.read("key", String.class, request));
+    delegate.write("key", "value", request);
+    Assertions.assertNull(dao.read("key", String.class, request));
+
+    CachingSessionDao.clearCache(request);
+    Assertions.assertEquals("value", dao.read("key", String.class, request));
+    Mockito.verify(delegate, Mockito.times(2)).read("key", String.class, request);
+  }
+
+  @Test
+  void testWritesUpdateCache() {
+    final SessionDao delegate = Mockito.spy(new ServletSessionDao());
+    final SessionDao dao = new CachingSessionDao(delegate);
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    Assertions.assertNull(dao.read("key", String.class, request));
+    dao.write("key", "value", request);
+    Assertions.assertEquals("value", dao.read("key", String.class, request));
+
+    dao.update(Map.of("other", "value2"), List.of("key"), request);
+    Assertions.assertNull(dao.read("key", String.class, request));
+    Assertions.assertEquals("value2", dao.read("other", String.class, request));
+
+    dao.remove("other", request);
+    Assertions.assertNull(dao.read("other", String.class, request));
+
+    Mockito.verify(delegate, Mockito.times(1)).read(Mockito.anyString(), Mockito.any(), Mockito.any());
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.authn.session;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+
+/**
+ * Test cases for SpringSessionDao.
+ *
+ * @author Martin Lindström
+ */
+class SpringSessionDaoTest {
+
+  @Test
+  void testUpdateIsSavedOnce() {
+    final MapSessionRepository repository = Mockito.spy(new MapSessionRepository(new HashMap<>()));
+    final MapSession stored = repository.createSession();
+    stored.setAttribute("removed", "value");
+    repository.save(stored);
+    Mockito.clearInvocations(repository);
+
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setSession(new MockHttpSession(null, stored.getId()));
+
+    final SpringSessionDao dao = new SpringSessionDao(repository);
+    dao.update(Map.of("a", "1", "b", "2", "c", "3"), List.of("removed"), request);
+
+    Mockito.verify(repository, Mockito.times(1)).save(ArgumentMatchers.any());
+    final MapSession session = repository.findById(stored.getId());
+    Assertions.assertEquals("1", session.getAttribute("a"));
+    Assertions.assertEquals("3", session.getAttribute("c"));
+    Assertions.assertNull(session.getAttribute("removed"));
+
+    // The objects are also visible in the servlet session
+    Assertions.assertEquals("2", dao.read("b", String.class, request));
+  }
+
+  @Test
+  void testWriteAndRemove() {
+    final MapSessionRepository repository = Mockito.spy(new MapSessionRepository(new HashMap<>()));
+    final MapSession stored = repository.createSession();
+    repository.save(stored);
+    Mockito.clearInvocations(repository);
+
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setSession(new MockHttpSession(null, stored.getId()));
+
+    final SpringSessionDao dao = new SpringSessionDao(repository);
+    dao.write("a", "1", request);
+    Assertions.assertEquals("1", repository.findById(stored.getId()).getAttribute("a"));
+    dao.remove("a", request);
+    Assertions.assertNull(repository.findById(stored.getId()).getAttribute("a"));
+    Mockito.verify(repository, Mockito.times(2)).save(ArgumentMatchers.any());
+
+    // Nothing to save
+    dao.update(Map.of(), List.of(), request);
+    Mockito.verify(repository, Mockito.times(2)).save(ArgumentMatchers.any());
+  }
+
+  @Test
+  void testNotStoredYet() {
+    final MapSessionRepository repository = Mockito.spy(new MapSessionRepository(new HashMap<>()));
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    final SpringSessionDao dao = new SpringSessionDao(repository);
+    dao.write("a", "1", request);
+    Mockito.verify(repository, Mockito.never()).save(ArgumentMatchers.any());
+    Assertions.assertEquals("1", dao.read("a", String.class, request));
+  }
+
+}
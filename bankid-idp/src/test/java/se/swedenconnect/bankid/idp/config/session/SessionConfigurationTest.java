@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023-2026 Sweden Connect
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.bankid.idp.config.session;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.ResolvableType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.session.FlushMode;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import se.swedenconnect.bankid.idp.authn.session.CachingSessionDao;
+import se.swedenconnect.bankid.idp.authn.session.SpringSessionDao;
+import se.swedenconnect.bankid.idp.config.BankIdConfigurationProperties;
+
+/**
+ * Test cases for SessionConfiguration.
+ *
+ * @author Martin Lindström
+ */
+class SessionConfigurationTest {
+
+  @Test
+  void testSingleHash() {
+    final RedissonClient client = Mockito.mock(RedissonClient.class);
+    final BankIdConfigurationProperties properties = new BankIdConfigurationProperties();
+    properties.getSession().setSingleHash(true);
+    final ObjectProvider<SessionRepository<? extends Session>> repository = repositoryProvider();
+
+    Assertions.assertInstanceOf(SpringSessionDao.class,
+        SessionConfiguration.createRedisSessionDao(client, properties, FlushMode.ON_SAVE, repository));
+
+    // Every changed object would be saved separately ...
+    final IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> SessionConfiguration.createRedisSessionDao(client, properties, FlushMode.IMMEDIATE, repository));
+    Assertions.assertTrue(e.getMessage().contains(SessionConfiguration.FLUSH_MODE_PROPERTY));
+  }
+
+  @Test
+  void testSeparateHash() {
+    final RedissonClient client = Mockito.mock(RedissonClient.class);
+    final BankIdConfigurationProperties properties = new BankIdConfigurationProperties();
+
+    Assertions.assertInstanceOf(CachingSessionDao.class,
+        SessionConfiguration.createRedisSessionDao(client, properties, FlushMode.ON_SAVE, repositoryProvider()));
+  }
+
+  @Test
+  void testGetFlushMode() {
+    Assertions.assertEquals(FlushMode.ON_SAVE, SessionConfiguration.getFlushMode(new MockEnvironment()));
+    Assertions.assertEquals(FlushMode.IMMEDIATE, SessionConfiguration.getFlushMode(
+        new MockEnvironment().withProperty(SessionConfiguration.FLUSH_MODE_PROPERTY, "immediate")));
+    Assertions.assertEquals(FlushMode.IMMEDIATE, SessionConfiguration.getFlushMode(
+        new MockEnvironment().withProperty("spring.session.redis.flush-mode", "IMMEDIATE")));
+  }
+
+  private static ObjectProvider<SessionRepository<? extends Session>> repositoryProvider() {
+    final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+    beanFactory.addBean("sessionRepository", new MapSessionRepository(new HashMap<>()));
+    return beanFactory.getBeanProvider(ResolvableType.forClassWithGenerics(SessionRepository.class,
+        ResolvableType.forClass(MapSession.class)));
+  }
+
+}
@@ -52,7 +52,7 @@ public class BankIdIdpIT extends BankIdIdpIntegrationSetup {
   void emptyRequestContext_WillFail() {
     final HttpServletRequest servletRequest = Mockito.mock(HttpServletRequest.class);
     Mockito.when(servletRequest.getSession()).thenReturn(Mockito.mock(HttpSession.class));
-    Assertions.assertThrows(UnrecoverableSaml2IdpException.class, () -> this.controller.poll(servletRequest, false).block());
+    Assertions.assertThrows(UnrecoverableSaml2IdpException.class, () -> this.controller.poll(servletRequest, false, false).block());
   }
 
   @Test